@@ -1,35 +1,68 @@
 package com.laoda.chatfilter;
 
-import com.laoda.chatfilter.algorithm.AhoCorasick;
+import com.laoda.chatfilter.algorithm.RegexMatcher;
 import com.laoda.chatfilter.config.ConfigValidator;
+import com.laoda.chatfilter.detection.AutomatonCache;
+import com.laoda.chatfilter.detection.CrossMessageTracker;
+import com.laoda.chatfilter.detection.DetectionBenchmark;
+import com.laoda.chatfilter.detection.DetectionEngine;
+import com.laoda.chatfilter.detection.DetectionSettings;
+import com.laoda.chatfilter.detection.DetectionSnapshot;
+import com.laoda.chatfilter.detection.FilterVerdict;
+import com.laoda.chatfilter.detection.FloodDetector;
+import com.laoda.chatfilter.detection.SeverityPolicy;
+import com.laoda.chatfilter.detection.ShadowEvaluator;
+import com.laoda.chatfilter.detection.VerdictCache;
 import com.laoda.chatfilter.i18n.Messages;
 import com.laoda.chatfilter.logging.ChatFilterLogger;
+import com.laoda.chatfilter.util.ChatRateLimiter;
+import com.laoda.chatfilter.util.CommandDispatchQueue;
 import com.laoda.chatfilter.util.ViolationCounter;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerEditBookEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.meta.BookMeta;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
 
+    /** 基准测试每轮检测的消息数量 */
+    private static final int BENCHMARK_MESSAGES = 20000;
+    /** 编译缓存文件名 (位于插件数据文件夹) */
+    private static final String AUTOMATON_CACHE_FILE = "automaton.cache";
+    /** 限流、跨消息检测和刷屏检测最多同时跟踪的玩家数量 */
+    private static final int MAX_TRACKED_PLAYERS = 10000;
+    /** 刷屏违规在处罚占位符 %category% 中的分类 */
+    private static final String FLOOD_CATEGORY = "flood";
+    /** 影子评估报告中每类差异列出的条目数和每个条目保留的示例消息数 */
+    private static final int SHADOW_REPORT_ENTRIES = 5;
+    private static final int SHADOW_SAMPLES = 3;
+    /** 每 tick 执行处罚命令的默认时间预算 (毫秒) */
+    private static final double DEFAULT_DISPATCH_BUDGET_MILLIS = 5.0;
+
     // 核心组件
-    private AhoCorasick wordMatcher;
+    private DetectionEngine detectionEngine;
     private ViolationCounter violationCounter;
+    private CommandDispatchQueue punishmentQueue;
     private ChatFilterLogger logger;
     private ConfigValidator configValidator;
     private Messages messages;
@@ -38,8 +71,20 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
     private Set<String> sensitiveWords;
     private Set<String> blacklistPlayers;
     private volatile boolean enabled;
-    private volatile boolean useRegex;
-    private volatile boolean caseSensitive;
+    private volatile DetectionSettings detectionSettings = DetectionSettings.defaults();
+    /** 聊天限流，未启用时为 null */
+    private volatile ChatRateLimiter rateLimiter;
+    /** 跨消息检测，未启用时为 null */
+    private volatile CrossMessageTracker crossMessageTracker;
+    /** 刷屏检测，未启用时为 null */
+    private volatile FloodDetector floodDetector;
+    private volatile int floodWeight = 1;
+    private volatile boolean scanSigns;
+    private volatile boolean scanBooks;
+    /** 候选词库的影子评估，未启用或候选词库尚未构建完成时为 null */
+    private volatile ShadowEvaluator shadowEvaluator;
+    /** 每次加载影子模式递增，丢弃被后续重载取代的后台构建结果 */
+    private int shadowGeneration;
 
     // 阶梯处罚相关变量
     private final Map<Integer, List<String>> punishmentCommands = new ConcurrentHashMap<>();
@@ -63,8 +108,8 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             // 初始化配置文件
             initializeConfigFiles();
 
-            // 加载并验证配置
-            loadAndValidateConfiguration();
+            // 加载并验证配置 (启动时等待首个快照构建完成)
+            loadAndValidateConfiguration().join();
 
             // 注册事件监听器
             getServer().getPluginManager().registerEvents(this, this);
@@ -75,6 +120,9 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             // 设置每日重置任务
             setupDailyResetTask();
 
+            // 每 tick 按时间预算执行排队的处罚命令
+            setupPunishmentDispatchTask();
+
             logger.info(messages.getRawMessage("system.plugin-enabled"));
             logger.info(messages.getRawMessage("system.loading-words", sensitiveWords.size()));
             logger.info(messages.getRawMessage("system.loading-blacklist", blacklistPlayers.size()));
@@ -89,6 +137,14 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
 
     @Override
     public void onDisable() {
+        if (detectionEngine != null) {
+            detectionEngine.shutdown();
+        }
+        installShadowEvaluator(-1, null);
+        if (punishmentQueue != null) {
+            // 关闭时执行仍在排队的处罚命令，避免丢失处罚
+            punishmentQueue.drainAll();
+        }
         if (logger != null) {
             logger.info("ChatFilter 插件正在关闭...");
             logger.shutdown();
@@ -103,9 +159,16 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         this.logger = new ChatFilterLogger(this);
         this.configValidator = new ConfigValidator();
         this.violationCounter = new ViolationCounter();
+        this.punishmentQueue = new CommandDispatchQueue(command -> {
+            try {
+                Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
+            } catch (Exception e) {
+                logger.warning("执行处罚命令失败: " + command + " - " + e.getMessage());
+            }
+        }, budgetNanos(DEFAULT_DISPATCH_BUDGET_MILLIS));
         this.sensitiveWords = ConcurrentHashMap.newKeySet();
         this.blacklistPlayers = ConcurrentHashMap.newKeySet();
-        this.wordMatcher = new AhoCorasick(false);
+        this.detectionEngine = new DetectionEngine();
     }
 
     private void initializeConfigFiles() throws IOException {
@@ -123,7 +186,7 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         blacklistConfig = YamlConfiguration.loadConfiguration(blacklistFile);
     }
 
-    private void loadAndValidateConfiguration() {
+    private CompletableFuture<DetectionSnapshot> loadAndValidateConfiguration() {
         // 验证主配置
         ConfigValidator.ValidationResult mainResult = configValidator.validateMainConfig(getConfig());
         if (!mainResult.isValid()) {
@@ -158,19 +221,21 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         }
 
         // 加载配置数据
-        loadConfigurationData();
+        CompletableFuture<DetectionSnapshot> rebuild = loadConfigurationData();
         
         // 配置日志系统
         configureLogging();
+        return rebuild;
     }
 
-    private void loadConfigurationData() {
+    private CompletableFuture<DetectionSnapshot> loadConfigurationData() {
         FileConfiguration config = getConfig();
 
         // 基本设置
         this.enabled = config.getBoolean("enabled", true);
-        this.useRegex = config.getBoolean("detection-settings.use-regex", false);
-        this.caseSensitive = config.getBoolean("detection-settings.case-sensitive", false);
+        this.detectionSettings = DetectionSettings.load(config.getConfigurationSection("detection-settings"))
+                .withSeverityPolicy(SeverityPolicy.load(config.getConfigurationSection("filter-mode"),
+                        wordsConfig));
 
         // 加载敏感词
         sensitiveWords.clear();
@@ -184,17 +249,46 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         }
 
         // 验证正则表达式（如果启用）
-        if (useRegex) {
+        if (detectionSettings.isUseRegex()) {
             ConfigValidator.ValidationResult regexResult = configValidator.validateRegexPatterns(new ArrayList<>(sensitiveWords));
             if (!regexResult.isValid()) {
                 logger.warning("检测到无效的正则表达式，将禁用正则模式");
-                this.useRegex = false;
+                this.detectionSettings = detectionSettings.withUseRegex(false);
             }
         }
 
-        // 重建字符串匹配器
-        this.wordMatcher = new AhoCorasick(caseSensitive);
-        this.wordMatcher.build(sensitiveWords);
+        // 跨消息检测：重载时丢弃所有玩家的状态
+        int windowSeconds = config.getInt("detection-settings.cross-message.window-seconds", 5);
+        long windowMillis = 1000L * (windowSeconds > 0 ? windowSeconds : 5);
+        this.crossMessageTracker = config.getBoolean("detection-settings.cross-message.enabled", false)
+                ? new CrossMessageTracker(windowMillis, MAX_TRACKED_PLAYERS) : null;
+
+        // 告示牌和书本内容检测
+        this.scanSigns = config.getBoolean("content-scanning.signs", true);
+        this.scanBooks = config.getBoolean("content-scanning.books", true);
+
+        // 聊天限流：重载时所有玩家的令牌桶重新装满
+        loadRateLimit(config.getConfigurationSection("rate-limit"));
+
+        // 刷屏检测：重载时丢弃所有玩家的记录
+        loadFloodDetection(config.getConfigurationSection("flood-detection"));
+
+        // 处罚命令的每 tick 时间预算 (超出范围的值使用默认值，由 ConfigValidator 报告)
+        double budgetMillis = config.getDouble("punishment-dispatch.tick-budget-ms", DEFAULT_DISPATCH_BUDGET_MILLIS);
+        punishmentQueue.setTickBudgetNanos(budgetNanos(budgetMillis > 0 && budgetMillis <= 50
+                ? budgetMillis : DEFAULT_DISPATCH_BUDGET_MILLIS));
+
+        // 影子模式：候选词库在后台构建，重载时重新开始统计
+        loadShadowMode(config.getConfigurationSection("shadow-mode"), config.getConfigurationSection("filter-mode"));
+
+        // 编译缓存：词库和设置未变时直接加载上次编译好的自动机
+        detectionEngine.setCache(config.getBoolean("detection-settings.automaton-cache", true)
+                ? new AutomatonCache(new File(getDataFolder(), AUTOMATON_CACHE_FILE),
+                        e -> logger.warning("读写自动机缓存失败，将重新构建: " + e.getMessage()))
+                : null);
+
+        // 在后台重建检测快照，完成前继续使用旧快照
+        CompletableFuture<DetectionSnapshot> rebuild = rebuildDetection();
 
         // 加载黑名单
         blacklistPlayers.clear();
@@ -209,6 +303,36 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
 
         // 加载处罚阶梯
         loadPunishmentStages(config);
+        return rebuild;
+    }
+
+    /**
+     * 根据当前词库和设置提交快照重建
+     */
+    private CompletableFuture<DetectionSnapshot> rebuildDetection() {
+        return detectionEngine.rebuild(sensitiveWords, detectionSettings)
+                .whenComplete(this::logRebuildResult);
+    }
+
+    private void logRebuildResult(DetectionSnapshot snapshot, Throwable error) {
+        if (error != null) {
+            logger.severe("重建敏感词匹配器失败，继续使用旧词库", error);
+            return;
+        }
+        if (snapshot.isUseRegex()) {
+            RegexMatcher regexMatcher = snapshot.getRegexMatcher();
+            for (String word : regexMatcher.getInvalidPatterns()) {
+                logger.warning("无效的正则表达式: " + word);
+            }
+            logger.fine("正则预过滤: " + regexMatcher.getFilteredCount() + " 个正则可由字面量过滤, "
+                    + (regexMatcher.getPatterns().size() - regexMatcher.getFilteredCount()) + " 个需逐条执行");
+        } else if (snapshot.getSettings().getVariantExpander().isEnabled()) {
+            logger.fine("变体展开: " + snapshot.getWordMatcher().getPatternCount() + " 个匹配键");
+        }
+        if (snapshot.isLoadedFromCache()) {
+            logger.fine("已从编译缓存加载自动机: " + AUTOMATON_CACHE_FILE);
+        }
+        logger.fine("敏感词匹配器已更新: " + snapshot.getWordCount() + " 个敏感词");
     }
 
     private void configureLogging() {
@@ -225,6 +349,105 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         logger.logConfigReload("主配置", true);
     }
 
+    private void loadRateLimit(ConfigurationSection section) {
+        if (section == null || !section.getBoolean("enabled", false)) {
+            this.rateLimiter = null;
+            return;
+        }
+
+        // 超出范围的值使用默认值 (由 ConfigValidator 报告)
+        double messagesPerSecond = section.getDouble("messages-per-second", 2.0);
+        int burst = section.getInt("burst", 5);
+        this.rateLimiter = new ChatRateLimiter(messagesPerSecond > 0 ? messagesPerSecond : 2.0,
+                burst >= 1 ? burst : 5, MAX_TRACKED_PLAYERS);
+    }
+
+    private void loadFloodDetection(ConfigurationSection section) {
+        if (section == null || !section.getBoolean("enabled", false)) {
+            this.floodDetector = null;
+            return;
+        }
+
+        // 超出范围的值使用默认值 (由 ConfigValidator 报告)
+        int historySize = section.getInt("history-size", 8);
+        int windowSeconds = section.getInt("window-seconds", 30);
+        int maxDistance = section.getInt("max-distance", 8);
+        int maxRepeats = section.getInt("max-repeats", 2);
+        int weight = section.getInt("weight", 1);
+        this.floodWeight = weight > 0 ? weight : 1;
+        this.floodDetector = new FloodDetector(
+                historySize >= 1 && historySize <= 64 ? historySize : 8,
+                1000L * (windowSeconds > 0 ? windowSeconds : 30),
+                maxDistance >= 0 && maxDistance <= 64 ? maxDistance : 8,
+                maxRepeats >= 0 ? maxRepeats : 2,
+                section.getInt("min-length", 4),
+                MAX_TRACKED_PLAYERS);
+    }
+
+    private void loadShadowMode(ConfigurationSection section, ConfigurationSection filterMode) {
+        int generation = installShadowEvaluator(-1, null);
+        if (section == null || !section.getBoolean("enabled", false)) {
+            return;
+        }
+
+        String fileName = section.getString("words-file", "words-candidate.yml");
+        File file = new File(getDataFolder(), fileName);
+        if (!file.exists()) {
+            logger.warning("影子模式的候选词库不存在: " + fileName);
+            return;
+        }
+        FileConfiguration candidateConfig = YamlConfiguration.loadConfiguration(file);
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : candidateConfig.getStringList("sensitive-words")) {
+            if (word != null && !word.trim().isEmpty()) {
+                words.add(word.trim());
+            }
+        }
+
+        // 与当前词库使用相同的检测设置，等级策略取自候选词库；候选快照不缓存结论
+        DetectionSettings settings = detectionSettings
+                .withSeverityPolicy(SeverityPolicy.load(filterMode, candidateConfig))
+                .withVerdictCacheSize(0);
+        // 超出范围的值使用默认值 (由 ConfigValidator 报告)
+        double sampleRate = section.getDouble("sample-rate", 1.0);
+        int queueSize = section.getInt("queue-size", 1024);
+        double effectiveRate = sampleRate > 0 && sampleRate <= 1 ? sampleRate : 1.0;
+        int effectiveQueueSize = queueSize >= 1 ? queueSize : 1024;
+
+        CompletableFuture.supplyAsync(() -> new DetectionSnapshot(words, settings))
+                .whenComplete((candidate, error) -> {
+                    if (error != null) {
+                        logger.severe("构建影子模式的候选词库失败", error);
+                        return;
+                    }
+                    ShadowEvaluator evaluator = new ShadowEvaluator(candidate, fileName, effectiveRate,
+                            effectiveQueueSize, SHADOW_SAMPLES, logger::warning);
+                    if (installShadowEvaluator(generation, evaluator) == generation) {
+                        logger.info("影子模式已启动: " + fileName + " (" + candidate.getWordCount() + " 个敏感词)");
+                    }
+                });
+    }
+
+    /**
+     * 替换影子评估器并停止旧的评估器
+     * generation 为 -1 时开始新的一代 (停止当前评估器)，否则只在仍是该代时安装 evaluator
+     * @return 当前的代数；安装被取代时 evaluator 会被立即停止
+     */
+    private synchronized int installShadowEvaluator(int generation, ShadowEvaluator evaluator) {
+        if (generation == -1) {
+            generation = ++shadowGeneration;
+        } else if (generation != shadowGeneration) {
+            evaluator.shutdown();
+            return shadowGeneration;
+        }
+        ShadowEvaluator previous = shadowEvaluator;
+        shadowEvaluator = evaluator;
+        if (previous != null) {
+            previous.shutdown();
+        }
+        return generation;
+    }
+
     private void loadPunishmentStages(FileConfiguration config) {
         punishmentCommands.clear();
         warningMessages.clear();
@@ -259,6 +482,19 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         }, 0L, 20L * 60 * 10);
     }
 
+    private void setupPunishmentDispatchTask() {
+        Bukkit.getScheduler().runTaskTimer(this, new Runnable() {
+            @Override
+            public void run() {
+                punishmentQueue.drain();
+            }
+        }, 1L, 1L);
+    }
+
+    private static long budgetNanos(double millis) {
+        return (long) (millis * 1_000_000L);
+    }
+
     @EventHandler
     public void onPlayerChat(AsyncPlayerChatEvent event) {
         if (!enabled) {
@@ -272,46 +508,161 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             return;
         }
 
-        String detectedWord = containsSensitiveWord(message);
-        if (detectedWord != null) {
+        ChatRateLimiter limiter = rateLimiter;
+        if (limiter != null && !limiter.tryAcquire(player.getUniqueId())) {
+            // 超出速率的消息在任何检测和日志之前直接丢弃
             event.setCancelled(true);
+            player.sendMessage(messages.getMessage("violation.rate-limited"));
+            return;
+        }
+
+        FloodDetector flood = floodDetector;
+        if (flood != null && flood.isFlood(player.getUniqueId(), message)) {
+            // 刷屏的消息直接拦截，不再检测敏感词
+            event.setCancelled(true);
+            String label = messages.getRawMessage("violation.flood");
+            int currentCount = violationCounter.addViolation(player.getName(), floodWeight);
+            logger.logViolation(player.getName(), message, label, currentCount);
+            executePunishment(player, message, label, FLOOD_CATEGORY, currentCount);
+            return;
+        }
 
-            int currentCount = violationCounter.incrementViolation(player.getName());
-            logger.logViolation(player.getName(), message, detectedWord, currentCount);
-            executePunishment(player, message, detectedWord, currentCount);
+        DetectionSnapshot snapshot = detectionEngine.current();
+        FilterVerdict verdict = snapshot.inspect(message);
+        ShadowEvaluator shadow = shadowEvaluator;
+        if (shadow != null) {
+            // 只比较消息自身的结论 (不含跨消息检测)，评估在后台线程上进行
+            shadow.offer(message, verdict);
+        }
+        CrossMessageTracker tracker = crossMessageTracker;
+        if (tracker != null) {
+            if (verdict == null) {
+                // 本条消息自身未命中时，再检查与此前消息拼接后的命中
+                verdict = tracker.inspect(player.getUniqueId(), snapshot, message);
+            } else {
+                tracker.reset(player.getUniqueId());
+            }
+        }
+        if (verdict != null) {
+            if (verdict.isCancel()) {
+                event.setCancelled(true);
+            } else {
+                // 低等级敏感词只替换命中部分，消息照常发送
+                event.setMessage(verdict.getMaskedMessage());
+            }
+
+            recordViolation(player, message, verdict);
         }
     }
 
-    private String containsSensitiveWord(String message) {
-        if (message == null || message.isEmpty()) {
-            return null;
+    @EventHandler(ignoreCancelled = true)
+    public void onSignChange(SignChangeEvent event) {
+        Player player = event.getPlayer();
+        if (!enabled || !scanSigns || blacklistPlayers.contains(player.getName())) {
+            return;
+        }
+
+        String[] lines = event.getLines();
+        List<FilterVerdict> verdicts = detectionEngine.current().inspectAll(Arrays.asList(lines));
+        FilterVerdict verdict = worstVerdict(verdicts);
+        if (verdict == null) {
+            return;
         }
 
-        if (useRegex) {
-            return containsSensitiveWordRegex(message);
+        if (verdict.isCancel()) {
+            event.setCancelled(true);
         } else {
-            return wordMatcher.findFirst(message);
+            for (int i = 0; i < lines.length; i++) {
+                if (verdicts.get(i) != null) {
+                    event.setLine(i, verdicts.get(i).getMaskedMessage());
+                }
+            }
         }
+        recordViolation(player, String.join(" ", lines), verdict);
     }
 
-    private String containsSensitiveWordRegex(String message) {
-        String checkMessage = caseSensitive ? message : message.toLowerCase();
+    @EventHandler(ignoreCancelled = true)
+    public void onBookEdit(PlayerEditBookEvent event) {
+        Player player = event.getPlayer();
+        if (!enabled || !scanBooks || blacklistPlayers.contains(player.getName())) {
+            return;
+        }
 
-        for (String word : sensitiveWords) {
-            String checkWord = caseSensitive ? word : word.toLowerCase();
-            try {
-                Pattern pattern = Pattern.compile(checkWord);
-                if (pattern.matcher(checkMessage).find()) {
-                    return word;
+        // 书的各页 (签名时还有标题) 作为一批检测
+        BookMeta book = event.getNewBookMeta();
+        List<String> texts = new ArrayList<>(book.getPages());
+        int pageCount = texts.size();
+        if (event.isSigning() && book.hasTitle()) {
+            texts.add(book.getTitle());
+        }
+        List<FilterVerdict> verdicts = detectionEngine.current().inspectAll(texts);
+        FilterVerdict verdict = worstVerdict(verdicts);
+        if (verdict == null) {
+            return;
+        }
+
+        // 标题不替换 (替换后可能超出长度限制且难以辨认)，标题命中时不论等级都取消签名
+        boolean titleHit = texts.size() > pageCount && verdicts.get(pageCount) != null;
+        if (verdict.isCancel() || titleHit) {
+            event.setCancelled(true);
+        } else {
+            List<String> pages = new ArrayList<>(texts.subList(0, pageCount));
+            for (int i = 0; i < pageCount; i++) {
+                if (verdicts.get(i) != null) {
+                    pages.set(i, verdicts.get(i).getMaskedMessage());
                 }
-            } catch (Exception e) {
-                logger.warning("无效的正则表达式: " + word);
             }
+            BookMeta masked = book.clone();
+            masked.setPages(pages);
+            event.setNewBookMeta(masked);
+        }
+        recordViolation(player, String.join(" ", texts), verdict);
+    }
+
+    /**
+     * 多段文本 (告示牌各行、书的各页) 的综合结论：任一段需要拦截时返回该段的结论，否则返回等级最高的结论
+     */
+    private FilterVerdict worstVerdict(List<FilterVerdict> verdicts) {
+        FilterVerdict worst = null;
+        for (FilterVerdict verdict : verdicts) {
+            if (verdict == null) continue;
+            if (verdict.isCancel()) return verdict;
+            if (worst == null || verdict.getSeverity() > worst.getSeverity()) {
+                worst = verdict;
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * 违规按敏感词权重累计，处罚阶梯按累计权重升级
+     */
+    private void recordViolation(Player player, String text, FilterVerdict verdict) {
+        String detectedWord = verdict.getWord();
+        int currentCount = violationCounter.addViolation(player.getName(), verdict.getWeight());
+        logger.logViolation(player.getName(), text, detectedWord, currentCount);
+        executePunishment(player, text, detectedWord, verdict.getCategory(), currentCount);
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+        ChatRateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.forget(playerId);
+        }
+        CrossMessageTracker tracker = crossMessageTracker;
+        if (tracker != null) {
+            tracker.forget(playerId);
+        }
+        FloodDetector flood = floodDetector;
+        if (flood != null) {
+            flood.forget(playerId);
         }
-        return null;
     }
 
-    private void executePunishment(Player player, String originalMessage, String detectedWord, int violationCount) {
+    private void executePunishment(Player player, String originalMessage, String detectedWord, String category,
+                                   int violationCount) {
         int effectiveStage = violationCount;
         while (effectiveStage > 0 && !punishmentCommands.containsKey(effectiveStage)) {
             effectiveStage--;
@@ -323,26 +674,28 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
                 String finalWarning = ChatColor.translateAlternateColorCodes('&',
                         warningMsg.replace("%player%", player.getName())
                                 .replace("%count%", String.valueOf(violationCount))
-                                .replace("%word%", detectedWord));
+                                .replace("%word%", detectedWord)
+                                .replace("%category%", category));
                 player.sendMessage(finalWarning);
             }
 
             List<String> commands = punishmentCommands.get(effectiveStage);
             if (commands != null) {
-                executePunishmentCommands(player, originalMessage, detectedWord, commands, violationCount);
+                executePunishmentCommands(player, originalMessage, detectedWord, category, commands, violationCount);
             }
         }
     }
 
     private void executePunishmentCommands(final Player player, final String originalMessage,
-                                           final String detectedWord, final List<String> commands,
-                                           final int violationCount) {
+                                           final String detectedWord, final String category,
+                                           final List<String> commands, final int violationCount) {
         for (final String command : commands) {
             if (command != null && !command.trim().isEmpty()) {
                 final String processedCommand = command
                         .replace("%player%", player.getName())
                         .replace("%message%", originalMessage)
                         .replace("%word%", detectedWord)
+                        .replace("%category%", category)
                         .replace("%count%", String.valueOf(violationCount));
 
                 final String finalCommand = processedCommand.startsWith("/") ?
@@ -350,16 +703,8 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
 
                 logger.logPunishment(player.getName(), violationCount, finalCommand);
 
-                Bukkit.getScheduler().runTask(this, new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), finalCommand);
-                        } catch (Exception e) {
-                            logger.warning("执行处罚命令失败: " + finalCommand + " - " + e.getMessage());
-                        }
-                    }
-                });
+                // 由主线程按每 tick 的时间预算依次执行，同一玩家的命令保持顺序
+                punishmentQueue.submit(finalCommand);
             }
         }
     }
@@ -396,6 +741,10 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
                         return resetViolationsCommand(sender, args);
                     case "stats":
                         return statsCommand(sender);
+                    case "benchmark":
+                        return benchmarkCommand(sender);
+                    case "shadow":
+                        return shadowCommand(sender);
                     default:
                         sendHelp(sender);
                         return true;
@@ -422,6 +771,8 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         sender.sendMessage(messages.getMessage("help.violations"));
         sender.sendMessage(messages.getMessage("help.resetviolations"));
         sender.sendMessage(messages.getMessage("help.stats"));
+        sender.sendMessage(messages.getMessage("help.benchmark"));
+        sender.sendMessage(messages.getMessage("help.shadow"));
     }
 
     private boolean reloadCommand(CommandSender sender) {
@@ -430,9 +781,15 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             messages.reload();
             wordsConfig = YamlConfiguration.loadConfiguration(wordsFile);
             blacklistConfig = YamlConfiguration.loadConfiguration(blacklistFile);
-            loadAndValidateConfiguration();
-            sender.sendMessage(messages.getMessage("system.config-reloaded"));
-            logger.logConfigReload("手动重载", true);
+            loadAndValidateConfiguration().whenComplete((snapshot, error) -> runOnMainThread(() -> {
+                if (error != null) {
+                    sender.sendMessage(messages.getMessage("system.config-reload-failed", error.getMessage()));
+                    logger.logConfigReload("手动重载", false);
+                } else {
+                    sender.sendMessage(messages.getMessage("system.config-reloaded"));
+                    logger.logConfigReload("手动重载", true);
+                }
+            }));
             return true;
         } catch (Exception e) {
             sender.sendMessage(messages.getMessage("system.config-reload-failed", e.getMessage()));
@@ -455,7 +812,7 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             try {
                 wordsConfig.save(wordsFile);
                 sensitiveWords.add(word);
-                wordMatcher.build(sensitiveWords);
+                detectionEngine.addWord(word).whenComplete(this::logRebuildResult);
                 sender.sendMessage(messages.getMessage("command.addword.success", word));
                 logger.info("管理员 " + sender.getName() + " 添加敏感词: " + word);
             } catch (IOException e) {
@@ -482,7 +839,7 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             try {
                 wordsConfig.save(wordsFile);
                 sensitiveWords.remove(word);
-                wordMatcher.build(sensitiveWords);
+                detectionEngine.removeWord(word).whenComplete(this::logRebuildResult);
                 sender.sendMessage(messages.getMessage("command.removeword.success", word));
                 logger.info("管理员 " + sender.getName() + " 删除敏感词: " + word);
             } catch (IOException e) {
@@ -576,9 +933,15 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             message.append(args[i]).append(" ");
         }
 
-        String detectedWord = containsSensitiveWord(message.toString().trim());
-        if (detectedWord != null) {
-            sender.sendMessage(messages.getMessage("command.test.detected", detectedWord));
+        String testMessage = message.toString().trim();
+        FilterVerdict verdict = testMessage.isEmpty() ? null : detectionEngine.current().inspect(testMessage);
+        if (verdict != null) {
+            sender.sendMessage(messages.getMessage("command.test.detected", verdict.getWord()));
+            sender.sendMessage(messages.getMessage("command.test.metadata", String.valueOf(verdict.getSeverity()),
+                    String.valueOf(verdict.getWeight()), verdict.getCategory()));
+            if (!verdict.isCancel()) {
+                sender.sendMessage(messages.getMessage("command.test.masked", verdict.getMaskedMessage()));
+            }
         } else {
             sender.sendMessage(messages.getMessage("command.test.clean"));
         }
@@ -625,8 +988,28 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         sender.sendMessage(messages.getMessage("command.stats.blacklist-count", String.valueOf(blacklistPlayers.size())));
         sender.sendMessage(messages.getMessage("command.stats.violation-players", String.valueOf(violationCounter.getViolationPlayerCount())));
         sender.sendMessage(messages.getMessage("command.stats.total-violations", String.valueOf(violationCounter.getTotalViolations())));
-        sender.sendMessage(messages.getMessage("command.stats.detection-mode", useRegex ? "正则表达式" : "字符串匹配"));
-        sender.sendMessage(messages.getMessage("command.stats.case-sensitive", caseSensitive ? "是" : "否"));
+        sender.sendMessage(messages.getMessage("command.stats.detection-mode", detectionSettings.isUseRegex() ? "正则表达式" : "字符串匹配"));
+        sender.sendMessage(messages.getMessage("command.stats.case-sensitive", detectionSettings.isCaseSensitive() ? "是" : "否"));
+        // 只统计当前词库的聊天消息 (影子评估的候选词库、告示牌和书本的批量检测不计入)
+        DetectionSnapshot snapshot = detectionEngine.current();
+        long inspected = snapshot.getInspectedCount();
+        long rejected = snapshot.getPrefilterRejectedCount();
+        sender.sendMessage(messages.getMessage("command.stats.prefilter", String.valueOf(rejected),
+                String.valueOf(inspected), inspected > 0 ? String.valueOf(rejected * 100 / inspected) : "0"));
+        long hits = VerdictCache.getHitCount();
+        long lookups = hits + VerdictCache.getMissCount();
+        sender.sendMessage(messages.getMessage("command.stats.verdict-cache", String.valueOf(hits),
+                String.valueOf(lookups), lookups > 0 ? String.valueOf(hits * 100 / lookups) : "0",
+                String.valueOf(detectionSettings.getVerdictCacheSize())));
+        sender.sendMessage(messages.getMessage("command.stats.throttled",
+                String.valueOf(ChatRateLimiter.getThrottledCount()), rateLimiter != null ? "启用" : "禁用"));
+        sender.sendMessage(messages.getMessage("command.stats.punishment-queue",
+                String.valueOf(punishmentQueue.getDepth()), String.valueOf(punishmentQueue.getPeakDepth()),
+                String.valueOf(punishmentQueue.getDispatchedCount())));
+        sender.sendMessage(messages.getMessage("command.stats.punishment-latency",
+                formatMillis(punishmentQueue.getAverageLatencyNanos()),
+                formatMillis(punishmentQueue.getMaxLatencyNanos()),
+                formatMillis(punishmentQueue.getTickBudgetNanos())));
         sender.sendMessage(messages.getMessage("command.stats.last-reset", violationCounter.getLastResetDate()));
         sender.sendMessage(messages.getMessage("command.stats.log-level", logger.getCurrentLevel().toString()));
         sender.sendMessage(messages.getMessage("command.stats.file-logging", logger.isFileLoggingEnabled() ? "启用" : "禁用"));
@@ -640,6 +1023,81 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
         return true;
     }
 
+    private static String formatMillis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+
+    private boolean benchmarkCommand(CommandSender sender) {
+        sender.sendMessage(messages.getMessage("command.benchmark.started"));
+
+        // 基准测试耗时数秒，在后台线程上针对当前快照执行
+        DetectionSnapshot snapshot = detectionEngine.current();
+        CompletableFuture.supplyAsync(() -> DetectionBenchmark.run(snapshot, BENCHMARK_MESSAGES))
+                .whenComplete((result, error) -> runOnMainThread(() -> {
+                    if (error != null) {
+                        sender.sendMessage(messages.getMessage("command.benchmark.failed", error.getMessage()));
+                        logger.warning("基准测试失败", error);
+                        return;
+                    }
+                    sender.sendMessage(messages.getMessage("command.benchmark.header",
+                            String.valueOf(result.getWordCount()), String.valueOf(result.getMessageCount())));
+                    sender.sendMessage(messages.getMessage("command.benchmark.literal",
+                            String.valueOf(result.getLiteralNanosPerMessage()), String.valueOf(result.getLiteralHits())));
+                    sender.sendMessage(messages.getMessage("command.benchmark.fuzzy",
+                            String.valueOf(result.getFuzzyNanosPerMessage()), String.valueOf(result.getFuzzyHits()),
+                            String.valueOf(result.getFuzzyWordCount()), String.valueOf(result.getFuzzyPieceCount())));
+                    if (result.getFuzzyBuildNanos() > 0) {
+                        sender.sendMessage(messages.getMessage("command.benchmark.fuzzy-build",
+                                String.valueOf(result.getFuzzyBuildNanos() / 1_000_000)));
+                    }
+                }));
+        return true;
+    }
+
+    private boolean shadowCommand(CommandSender sender) {
+        ShadowEvaluator shadow = shadowEvaluator;
+        if (shadow == null) {
+            sender.sendMessage(messages.getMessage("command.shadow.disabled"));
+            return true;
+        }
+
+        sender.sendMessage(messages.getMessage("command.shadow.header", shadow.getName(),
+                String.valueOf(shadow.getCandidateWordCount())));
+        sender.sendMessage(messages.getMessage("command.shadow.summary", String.valueOf(shadow.getEvaluatedCount()),
+                String.valueOf(shadow.getDifferingCount()), String.valueOf(shadow.getDroppedCount()),
+                String.valueOf(shadow.getQueueSize()), String.valueOf(shadow.getFailedCount())));
+        sendShadowDifferences(sender, shadow, ShadowEvaluator.Kind.ADDED, "command.shadow.added");
+        sendShadowDifferences(sender, shadow, ShadowEvaluator.Kind.REMOVED, "command.shadow.removed");
+        sendShadowDifferences(sender, shadow, ShadowEvaluator.Kind.ACTION_CHANGED, "command.shadow.action-changed");
+        return true;
+    }
+
+    private void sendShadowDifferences(CommandSender sender, ShadowEvaluator shadow, ShadowEvaluator.Kind kind,
+                                       String headerKey) {
+        sender.sendMessage(messages.getMessage(headerKey));
+        List<ShadowEvaluator.Entry> entries = shadow.getTopDifferences(kind, SHADOW_REPORT_ENTRIES);
+        if (entries.isEmpty()) {
+            sender.sendMessage(messages.getMessage("command.shadow.none"));
+            return;
+        }
+        for (ShadowEvaluator.Entry entry : entries) {
+            sender.sendMessage(messages.getMessage("command.shadow.entry", entry.getKey(),
+                    String.valueOf(entry.getCount())));
+            for (String sample : entry.getSamples()) {
+                sender.sendMessage(messages.getMessage("command.shadow.sample", sample));
+            }
+        }
+    }
+
+    /**
+     * 在主线程执行任务 (后台构建完成后回复命令发送者)
+     */
+    private void runOnMainThread(Runnable task) {
+        if (isEnabled()) {
+            Bukkit.getScheduler().runTask(this, task);
+        }
+    }
+
     /**
      * Tab 补全功能
      * 为命令提供智能补全建议
@@ -657,7 +1115,7 @@ public class ChatFilter extends JavaPlugin implements Listener, TabExecutor {
             List<String> commands = Arrays.asList(
                 "reload", "addword", "removeword", "listwords",
                 "addblacklist", "removeblacklist", "listblacklist",
-                "test", "violations", "resetviolations", "stats"
+                "test", "violations", "resetviolations", "stats", "benchmark", "shadow"
             );
             
             String input = args[0].toLowerCase();
@@ -1,48 +1,360 @@
 package com.laoda.chatfilter.algorithm;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * Aho-Corasick 算法实现
  * 用于高效的多模式字符串匹配
+ *
+ * 构建完成后自动机被编译为双数组 (base/check) 结构，
+ * 失败链接和输出均保存在基本类型数组中，逐字符状态转移只需几次数组读取。
+ * 每个状态只保存自身的模式编号，另有一条字典后缀链接指向失败链上最近的有输出的状态，
+ * 报告命中时只访问确实有输出的状态，每个命中恰好报告一次。
+ * 另外编译一张覆盖整个 BMP 的位图，记录能作为某个模式首字符的原始字符，
+ * 不含任何此类字符的消息可由 {@link #mayMatch(CharSequence)} 在一个紧凑循环内直接排除。
+ *
+ * 编译后的数组可以放在堆内，也可以放在直接内存或缓存文件的内存映射中 ({@link AutomatonStorage})，
+ * 百万级词库时 Java 堆占用和 GC 停顿不随词库增长。
+ *
+ * 实例在构造时一次性编译完成且不可变，可被任意多个线程并发搜索；
+ * 词库变化时应构建新实例并整体替换引用。
+ *
+ * 字符规范化 ({@link CharNormalizer}) 和大小写折叠在构建时合并进字符编码表，
+ * 检测时每个字符只需一次查表，被忽略的字符 (零宽字符、颜色代码、分隔符等噪声) 不改变自动机状态。
+ * 开启重复字符跳过时，与上一个字符相同且会使匹配深度回退的字符被跳过，
+ * 因此 "傻 逼"、"s.b"、"fuuuck" 都能以单次线性扫描命中，命中位置仍指向原文；
+ * 回退到的状态本身有命中时 (如词库含 "xabc" 和 "bb" 时的 "xabb") 照常报告，但状态不回退。
  */
 public class AhoCorasick {
-    
-    private final TrieNode root;
+
+    /** 根状态固定位于双数组第 0 格 */
+    private static final int ROOT = 0;
+    /** check 数组中的空闲标记 */
+    private static final int FREE = -1;
+    /** 根状态占位标记，保证第 0 格不会被分配给其他状态 */
+    private static final int ROOT_MARK = -2;
+    /** 字符未出现在任何模式中时的编码 */
+    private static final int NO_CODE = 0;
+    /** 应被忽略、不改变状态的字符编码 */
+    private static final int IGNORE_CODE = -1;
+    /** 颜色代码前缀 (&amp; 或 §)，需要结合下一个字符判断 */
+    private static final int COLOR_PREFIX_CODE = -2;
+
+    private static final int[] NO_IDS = new int[0];
+
+    /** 每个线程复用的位置环形缓冲区，借出期间置空，嵌套搜索时另行分配 */
+    private static final ThreadLocal<int[][]> POSITIONS = ThreadLocal.withInitial(() -> new int[1][]);
+
+    /** 流式检测的初始状态 (根状态)，见 {@link #resume(int, CharSequence, MatchHandler)} */
+    public static final int START_STATE = ROOT;
+
+    /** 模式数量达到该值时在 ForkJoinPool 上并行构建，更小的词库 (如增量层) 并行开销大于收益 */
+    private static final int PARALLEL_THRESHOLD = 4096;
+    /** 失败链接按层并行计算时，单层状态数低于该值则顺序计算 */
+    private static final int PARALLEL_LEVEL_THRESHOLD = 2048;
+
+    /** 小写折叠表，逐字符查表代替 String.toLowerCase() */
+    private static final char[] LOWER_CASE = new char[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            LOWER_CASE[c] = Character.toLowerCase((char) c);
+        }
+    }
+
     private final boolean caseSensitive;
-    
-    public AhoCorasick(boolean caseSensitive) {
-        this.root = new TrieNode();
+    private final CharNormalizer normalizer;
+
+    // 编译后的自动机 (charCodes 已合并规范化和大小写折叠，按原始字符直接查表)
+    private final int[] charCodes;
+    private final int ampersandCode;
+    private final int sectionCode;
+    private final IntArray base;
+    private final IntArray check;
+    private final IntArray fail;
+    private final IntArray output;
+    /** 字典后缀链接：失败链上最近的有输出的状态，没有时为根状态 */
+    private final IntArray dict;
+    /** 每个状态在 Trie 中的深度，仅在跳过重复字符时需要 */
+    private final IntArray depth;
+    private final LabelArray patterns;
+    private final IntArray patternLengths;
+    private final int maxPatternLength;
+    private final AutomatonStorage storage;
+    /** 能从根状态出发的原始字符位图 (每个 char 一位，共 8KB)，不随词库增长，始终位于堆内 */
+    private final long[] startChars;
+
+    /**
+     * 构建 Trie 树和失败函数，并编译为双数组
+     */
+    public AhoCorasick(Collection<String> patterns, boolean caseSensitive) {
+        this(patterns, caseSensitive, CharNormalizer.NONE);
+    }
+
+    /**
+     * 构建 Trie 树和失败函数，并编译为双数组
+     * @param normalizer 字符规范化表，模式和待检测文本使用同一张表
+     */
+    public AhoCorasick(Collection<String> patterns, boolean caseSensitive, CharNormalizer normalizer) {
+        this(new ArrayList<>(patterns), null, caseSensitive, normalizer);
+    }
+
+    /**
+     * 构建带标签的自动机，命中 keys 中的任一模式时报告对应的标签 (如变体对应的原始敏感词)
+     * @param labels 与 keys 一一对应；为 null 时标签即模式本身
+     */
+    public AhoCorasick(List<String> keys, List<String> labels, boolean caseSensitive, CharNormalizer normalizer) {
+        this.caseSensitive = caseSensitive;
+        this.normalizer = normalizer;
+
+        String[] sources = keys.toArray(new String[0]);
+        int count = sources.length;
+        boolean parallel = count >= PARALLEL_THRESHOLD;
+
+        // 各模式的规范化互不相关，可并行计算
+        String[] normalized = new String[count];
+        range(0, count, parallel).forEach(i -> {
+            String pattern = sources[i];
+            normalized[i] = pattern == null || pattern.isEmpty() ? "" : toKey(pattern, normalizer, caseSensitive);
+        });
+
+        // 按首字符稳定分组 (计数排序)，同组内保持输入顺序
+        int[] frequency = new int[Character.MAX_VALUE + 1];
+        int[] groupStart = new int[Character.MAX_VALUE + 2];
+        for (String key : normalized) {
+            if (key.isEmpty()) continue;
+            groupStart[key.charAt(0) + 1]++;
+            for (int i = 0; i < key.length(); i++) {
+                frequency[key.charAt(i)]++;
+            }
+        }
+        int groupCount = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (groupStart[c + 1] > 0) groupCount++;
+            groupStart[c + 1] += groupStart[c];
+        }
+        int[] order = new int[groupStart[Character.MAX_VALUE + 1]];
+        int[] cursor = Arrays.copyOf(groupStart, Character.MAX_VALUE + 1);
+        for (int index = 0; index < count; index++) {
+            if (!normalized[index].isEmpty()) {
+                order[cursor[normalized[index].charAt(0)]++] = index;
+            }
+        }
+
+        char[] firstChars = new char[groupCount];
+        int group = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (groupStart[c + 1] > groupStart[c]) firstChars[group++] = (char) c;
+        }
+
+        // 不同首字符的子 Trie 互不相交，在 ForkJoinPool 上并行构建；
+        // 构建期间终止节点的 patternId 暂存首次出现的输入下标
+        TrieNode[] subRoots = new TrieNode[groupCount];
+        List<List<TrieNode>> terminals = new ArrayList<>(Collections.nCopies(groupCount, null));
+        range(0, groupCount, parallel).forEach(g -> {
+            TrieNode subRoot = new TrieNode();
+            List<TrieNode> found = new ArrayList<>();
+            char first = firstChars[g];
+            for (int i = groupStart[first]; i < groupStart[first + 1]; i++) {
+                int index = order[i];
+                String key = normalized[index];
+                TrieNode current = subRoot;
+                for (int j = 1; j < key.length(); j++) {
+                    char c = key.charAt(j);
+                    TrieNode next = current.children.get(c);
+                    if (next == null) {
+                        next = new TrieNode();
+                        current.children.put(c, next);
+                    }
+                    current = next;
+                }
+                // 规范化后相同的模式只保留第一个
+                if (current.patternId < 0) {
+                    current.patternId = index;
+                    found.add(current);
+                }
+            }
+            subRoots[g] = subRoot;
+            terminals.set(g, found);
+        });
+
+        TrieNode root = new TrieNode();
+        List<TrieNode> accepted = new ArrayList<>();
+        for (int g = 0; g < groupCount; g++) {
+            root.children.put(firstChars[g], subRoots[g]);
+            accepted.addAll(terminals.get(g));
+        }
+
+        // 按首次出现的输入顺序分配模式编号，与逐个插入的顺序构建完全一致
+        accepted.sort(Comparator.comparingInt(node -> node.patternId));
+        String[] acceptedLabels = new String[accepted.size()];
+        int[] keyLengths = new int[accepted.size()];
+        for (int id = 0; id < acceptedLabels.length; id++) {
+            TrieNode node = accepted.get(id);
+            int index = node.patternId;
+            acceptedLabels[id] = labels == null ? sources[index] : labels.get(index); // 保存原始模式或标签
+            keyLengths[id] = normalized[index].length();
+            node.patternId = id;
+        }
+
+        int[] codes = assignCharCodes(frequency);
+        DoubleArrayBuilder builder = compile(root, codes);
+        builder.computeLinks(parallel);
+
+        int length = builder.maxSlot + 1;
+        this.charCodes = composeCharCodes(codes);
+        this.ampersandCode = codeOf(codes, normalizer.map('&'));
+        this.sectionCode = codeOf(codes, normalizer.map('§'));
+        this.storage = AutomatonStorage.HEAP;
+        this.base = IntArray.of(Arrays.copyOf(builder.base, length), storage);
+        this.check = IntArray.of(Arrays.copyOf(builder.check, length), storage);
+        this.fail = IntArray.of(Arrays.copyOf(builder.fail, length), storage);
+        this.output = IntArray.of(Arrays.copyOf(builder.output, length), storage);
+        this.dict = IntArray.of(Arrays.copyOf(builder.dict, length), storage);
+        this.depth = normalizer.isCollapseRepeats()
+                ? IntArray.of(Arrays.copyOf(builder.depth, length), storage) : null;
+        this.patterns = LabelArray.of(acceptedLabels, storage);
+        this.patternLengths = IntArray.of(keyLengths, storage);
+        this.maxPatternLength = maxOf(patternLengths);
+        this.startChars = computeStartChars();
+    }
+
+    private AhoCorasick(AhoCorasick source, AutomatonStorage storage, IntArray base, IntArray check, IntArray fail,
+                        IntArray output, IntArray dict, IntArray depth, LabelArray patterns,
+                        IntArray patternLengths) {
+        this.caseSensitive = source.caseSensitive;
+        this.normalizer = source.normalizer;
+        this.charCodes = source.charCodes;
+        this.ampersandCode = source.ampersandCode;
+        this.sectionCode = source.sectionCode;
+        this.storage = storage;
+        this.base = base;
+        this.check = check;
+        this.fail = fail;
+        this.output = output;
+        this.dict = dict;
+        this.depth = depth;
+        this.patterns = patterns;
+        this.patternLengths = patternLengths;
+        this.maxPatternLength = maxOf(patternLengths);
+        this.startChars = computeStartChars();
+    }
+
+    private AhoCorasick(boolean caseSensitive, CharNormalizer normalizer, int[] charCodes,
+                        int ampersandCode, int sectionCode, AutomatonStorage storage,
+                        IntArray base, IntArray check, IntArray fail, IntArray output, IntArray dict,
+                        IntArray depth, LabelArray patterns, IntArray patternLengths) {
         this.caseSensitive = caseSensitive;
+        this.normalizer = normalizer;
+        this.charCodes = charCodes;
+        this.ampersandCode = ampersandCode;
+        this.sectionCode = sectionCode;
+        this.storage = storage;
+        this.base = base;
+        this.check = check;
+        this.fail = fail;
+        this.output = output;
+        this.dict = dict;
+        this.depth = depth;
+        this.patterns = patterns;
+        this.patternLengths = patternLengths;
+        this.maxPatternLength = maxOf(patternLengths);
+        this.startChars = computeStartChars();
+    }
+
+    /**
+     * 返回使用指定存储方式的等价自动机 (存储方式相同时返回自身)
+     * 转换只复制已编译的数组，不重新构建；MAPPED 需要缓存文件，在此按 DIRECT 处理
+     */
+    public AhoCorasick toStorage(AutomatonStorage target) {
+        AutomatonStorage effective = target == AutomatonStorage.MAPPED ? AutomatonStorage.DIRECT : target;
+        if (storage == effective || (storage == AutomatonStorage.MAPPED && target == AutomatonStorage.MAPPED)) {
+            return this;
+        }
+
+        String[] labels = new String[patterns.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = patterns.get(i);
+        }
+        return new AhoCorasick(this, effective, copy(base, effective), copy(check, effective),
+                copy(fail, effective), copy(output, effective), copy(dict, effective),
+                depth == null ? null : copy(depth, effective),
+                LabelArray.of(labels, effective), copy(patternLengths, effective));
     }
-    
+
     /**
-     * 构建 Trie 树和失败函数
+     * 把编译结果写入输出流 (大端序)，供 {@link #readFrom(ByteBuffer, CharNormalizer, AutomatonStorage)} 直接恢复
+     * 规范化表不写入，读取方必须提供构建时使用的同一张表
      */
-    public void build(Collection<String> patterns) {
-        // 清空现有的 Trie 树
-        root.children.clear();
-        root.fail = null;
-        root.output.clear();
-        
-        // 构建 Trie 树
-        for (String pattern : patterns) {
-            if (pattern == null || pattern.isEmpty()) continue;
-            
-            String processedPattern = caseSensitive ? pattern : pattern.toLowerCase();
-            TrieNode current = root;
-            
-            for (char c : processedPattern.toCharArray()) {
-                current.children.putIfAbsent(c, new TrieNode());
-                current = current.children.get(c);
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeBoolean(caseSensitive);
+        out.writeBoolean(depth != null);
+        out.writeInt(ampersandCode);
+        out.writeInt(sectionCode);
+        IntArray.of(charCodes, AutomatonStorage.HEAP).writeTo(out);
+        base.writeTo(out);
+        check.writeTo(out);
+        fail.writeTo(out);
+        output.writeTo(out);
+        dict.writeTo(out);
+        if (depth != null) {
+            depth.writeTo(out);
+        }
+        patternLengths.writeTo(out);
+        patterns.writeTo(out);
+    }
+
+    /**
+     * 从 {@link #writeTo(DataOutputStream)} 写出的数据恢复自动机，不重新构建 Trie
+     * buffer 可以是 FileChannel.map 得到的只读映射：MAPPED 方式直接引用其中的数据，
+     * 其余方式复制到堆或直接内存后不再引用它
+     * @throws IllegalArgumentException 数据不完整或与规范化表不一致
+     */
+    public static AhoCorasick readFrom(ByteBuffer buffer, CharNormalizer normalizer, AutomatonStorage storage) {
+        try {
+            boolean caseSensitive = buffer.get() != 0;
+            boolean hasDepth = buffer.get() != 0;
+            if (hasDepth != normalizer.isCollapseRepeats()) {
+                throw new IllegalArgumentException("规范化表与缓存不一致");
+            }
+            int ampersandCode = buffer.getInt();
+            int sectionCode = buffer.getInt();
+            // 编码表长度固定，先校验再分配，损坏的长度不会导致巨大的分配
+            int charCodesLength = buffer.getInt();
+            if (charCodesLength != Character.MAX_VALUE + 1) {
+                throw new IllegalArgumentException("自动机数据不完整");
+            }
+            int[] charCodes = new int[charCodesLength];
+            IntArray.slice(buffer, charCodesLength * 4L).asIntBuffer().get(charCodes);
+            IntArray base = IntArray.read(buffer, storage);
+            IntArray check = IntArray.read(buffer, storage);
+            IntArray fail = IntArray.read(buffer, storage);
+            IntArray output = IntArray.read(buffer, storage);
+            IntArray dict = IntArray.read(buffer, storage);
+            IntArray depth = hasDepth ? IntArray.read(buffer, storage) : null;
+            IntArray patternLengths = IntArray.read(buffer, storage);
+            LabelArray patterns = LabelArray.read(buffer, storage);
+
+            int states = base.length();
+            if (states == 0
+                    || check.length() != states || fail.length() != states || output.length() != states
+                    || dict.length() != states
+                    || (depth != null && depth.length() != states)
+                    || patternLengths.length() != patterns.size()) {
+                throw new IllegalArgumentException("自动机数据不完整");
             }
-            current.output.add(pattern); // 保存原始模式
+            return new AhoCorasick(caseSensitive, normalizer, charCodes, ampersandCode, sectionCode, storage,
+                    base, check, fail, output, dict, depth, patterns, patternLengths);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("自动机数据不完整", e);
         }
-        
-        // 构建失败函数
-        buildFailureFunction();
     }
-    
+
     /**
      * 搜索文本中的所有匹配模式
      */
@@ -50,89 +362,694 @@ public class AhoCorasick {
         if (text == null || text.isEmpty()) {
             return Collections.emptyList();
         }
-        
+
         List<MatchResult> results = new ArrayList<>();
-        String processedText = caseSensitive ? text : text.toLowerCase();
-        
-        TrieNode current = root;
-        
-        for (int i = 0; i < processedText.length(); i++) {
-            char c = processedText.charAt(i);
-            
-            // 沿着失败函数寻找匹配
-            while (current != root && !current.children.containsKey(c)) {
-                current = current.fail;
-            }
-            
-            if (current.children.containsKey(c)) {
-                current = current.children.get(c);
-            }
-            
-            // 检查当前节点和其失败链上的所有输出
-            TrieNode temp = current;
-            while (temp != null) {
-                for (String pattern : temp.output) {
-                    results.add(new MatchResult(pattern, i - pattern.length() + 1, i));
-                }
-                temp = temp.fail;
-            }
-        }
-        
+        search(text, (patternId, start, end) -> {
+            results.add(new MatchResult(patterns.get(patternId), start, end));
+            return true;
+        });
         return results;
     }
-    
+
+    /**
+     * 搜索文本中的所有匹配模式，每个命中回调一次
+     * 起止位置均指向原始文本；规范化会忽略字符时，需要一个与最长模式等长的位置环形缓冲区
+     */
+    public void search(CharSequence text, MatchHandler handler) {
+        resume(START_STATE, text, handler);
+    }
+
+    /**
+     * 从上一段文本结束时的状态继续搜索，返回本段文本结束时的状态
+     * 状态只是一个 int，调用方可以逐段 (如同一玩家的连续消息) 保存并传回，
+     * 跨越段边界的命中也会被报告，其起始位置为负数，表示始于此前的文本。
+     * 状态只对产生它的实例有效；处理器中止搜索时返回 {@link #START_STATE}
+     */
+    public int resume(int state, CharSequence text, MatchHandler handler) {
+        if (text == null) return state;
+        if (state < 0 || state >= check.length()) state = ROOT;
+        if (!normalizer.skipsCharacters()) {
+            return scan(state, text, handler, null);
+        }
+
+        // 记录最近被自动机消费的字符在原文中的位置，用于还原命中的起始位置
+        int[][] holder = POSITIONS.get();
+        int[] positions = holder[0];
+        holder[0] = null;
+        int size = ringSize(maxPatternLength);
+        if (positions == null || positions.length < size) {
+            positions = new int[size];
+        }
+        try {
+            return scan(state, text, handler, positions);
+        } finally {
+            holder[0] = positions;
+        }
+    }
+
+    /**
+     * @param positions 位置环形缓冲区 (长度为 2 的幂且不小于最长模式)，不忽略字符时为 null
+     */
+    private int scan(int state, CharSequence text, MatchHandler handler, int[] positions) {
+        int mask = positions == null ? 0 : positions.length - 1;
+        int consumed = 0;
+
+        int previousCode = NO_CODE;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int code = charCodes[c];
+            if (code <= 0) {
+                if (code == COLOR_PREFIX_CODE) {
+                    if (i + 1 < length && CharNormalizer.isColorCodeChar(text.charAt(i + 1))) {
+                        i++;
+                        continue;
+                    }
+                    code = c == '&' ? ampersandCode : sectionCode;
+                }
+                if (code == IGNORE_CODE) {
+                    continue;
+                }
+                if (code == NO_CODE) {
+                    // 该字符不在任何模式中，直接回到根状态
+                    state = ROOT;
+                    previousCode = NO_CODE;
+                    if (positions != null) positions[consumed++ & mask] = i;
+                    continue;
+                }
+            }
+
+            int next = transition(state, code);
+            if (code == previousCode && depth != null && depth.get(next) < depth.get(state)) {
+                // 重复字符会让匹配回退，视为噪声跳过；回退到的状态有命中时仍报告，当前的较长匹配继续保留
+                if (output.get(next) >= 0 || dict.get(next) != ROOT) {
+                    if (positions != null) positions[consumed & mask] = i;
+                    if (!report(next, i, consumed + 1, handler, positions)) {
+                        return START_STATE;
+                    }
+                }
+                continue;
+            }
+            state = next;
+            previousCode = code;
+            if (positions != null) positions[consumed++ & mask] = i;
+
+            if (!report(state, i, consumed, handler, positions)) {
+                return START_STATE;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 报告以 state 结束于 end 的命中：state 和字典后缀链上的每个状态各对应一个命中
+     * @param consumed 包含 end 在内已被自动机消费的字符数
+     * @return 处理器要求中止搜索时返回 false
+     */
+    private boolean report(int state, int end, int consumed, MatchHandler handler, int[] positions) {
+        int mask = positions == null ? 0 : positions.length - 1;
+        for (int temp = output.get(state) >= 0 ? state : dict.get(state); temp != ROOT; temp = dict.get(temp)) {
+            int id = output.get(temp);
+            int patternLength = patternLengths.get(id);
+            // 跨越段边界的命中在本段只有部分字符，起点记为负数
+            int start = positions == null ? end - patternLength + 1
+                    : consumed >= patternLength ? positions[(consumed - patternLength) & mask]
+                    : consumed - patternLength;
+            if (!handler.onMatch(id, start, end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 快速预过滤：文本中没有任何字符能作为模式的首字符时一定不会命中，返回 false
+     * 返回 true 只表示可能命中，仍需完整检测
+     */
+    public boolean mayMatch(CharSequence text) {
+        if (text == null) return false;
+
+        long[] bits = startChars;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if ((bits[c >>> 6] & (1L << c)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查找第一个命中的模式编号，未命中返回 -1
+     * 遇到第一个命中立即返回，干净消息的路径不分配任何对象
+     */
+    public int findFirstId(CharSequence text) {
+        return findFirstId(text, NO_IDS);
+    }
+
+    /**
+     * 查找第一个未被排除的命中模式编号，未命中返回 -1
+     * @param excludedIds 需要跳过的模式编号 (升序)，仅在命中时才会查询
+     */
+    public int findFirstId(CharSequence text, int[] excludedIds) {
+        if (text == null) return -1;
+
+        int state = ROOT;
+        int previousCode = NO_CODE;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int code = charCodes[c];
+            if (code <= 0) {
+                if (code == COLOR_PREFIX_CODE) {
+                    if (i + 1 < length && CharNormalizer.isColorCodeChar(text.charAt(i + 1))) {
+                        i++;
+                        continue;
+                    }
+                    code = c == '&' ? ampersandCode : sectionCode;
+                }
+                if (code == IGNORE_CODE) {
+                    continue;
+                }
+                if (code == NO_CODE) {
+                    state = ROOT;
+                    previousCode = NO_CODE;
+                    continue;
+                }
+            }
+
+            int next = transition(state, code);
+            boolean skipped = code == previousCode && depth != null && depth.get(next) < depth.get(state);
+            if (!skipped) {
+                state = next;
+                previousCode = code;
+            }
+
+            // 跳过的重复字符不改变状态，但回退到的状态上的命中同样有效
+            for (int temp = output.get(next) >= 0 ? next : dict.get(next); temp != ROOT; temp = dict.get(temp)) {
+                int id = output.get(temp);
+                if (excludedIds.length == 0 || Arrays.binarySearch(excludedIds, id) < 0) {
+                    return id;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 精确查找模式的编号 (按规范化和大小写设置折叠后比较)，不存在返回 -1
+     */
+    public int findPatternId(CharSequence pattern) {
+        if (pattern == null || pattern.length() == 0) return -1;
+
+        // 与检测时相同的逐字符规则，但只沿 goto 边前进
+        int state = ROOT;
+        int length = pattern.length();
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            int code = charCodes[c];
+            if (code <= 0) {
+                if (code == COLOR_PREFIX_CODE) {
+                    if (i + 1 < length && CharNormalizer.isColorCodeChar(pattern.charAt(i + 1))) {
+                        i++;
+                        continue;
+                    }
+                    code = c == '&' ? ampersandCode : sectionCode;
+                }
+                if (code == IGNORE_CODE) {
+                    continue;
+                }
+                if (code == NO_CODE) return -1;
+            }
+
+            int next = base.get(state) + code;
+            if (next >= check.length() || check.get(next) != state) return -1;
+            state = next;
+        }
+        if (state == ROOT) return -1;
+        return output.get(state);
+    }
+
+    /**
+     * 检查文本是否包含任何模式，返回第一个命中的模式
+     */
+    public String findFirst(CharSequence text) {
+        int id = findFirstId(text);
+        return id >= 0 ? patterns.get(id) : null;
+    }
+
     /**
      * 检查文本是否包含任何模式
      */
-    public String findFirst(String text) {
-        List<MatchResult> results = search(text);
-        return results.isEmpty() ? null : results.get(0).getPattern();
+    public boolean contains(CharSequence text) {
+        return findFirstId(text) >= 0;
+    }
+
+    /**
+     * 两个模式在当前规范化和大小写设置下是否等价
+     */
+    boolean isSameKey(String first, String second) {
+        return toKey(first).equals(toKey(second));
+    }
+
+    /**
+     * 根据模式编号获取原始模式 (带标签构建时返回标签)
+     */
+    public String getPattern(int patternId) {
+        return patterns.get(patternId);
+    }
+
+    /**
+     * 获取模式数量
+     */
+    public int getPatternCount() {
+        return patterns.size();
+    }
+
+    /**
+     * 获取字符规范化表
+     */
+    public CharNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * 是否区分大小写
+     */
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * 获取状态数量 (双数组实际占用的格数)
+     */
+    public int getStateCount() {
+        return base.length();
+    }
+
+    /**
+     * 获取存储方式
+     */
+    public AutomatonStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * 沿失败链寻找可接受 code 的状态并完成转移
+     */
+    private int transition(int state, int code) {
+        while (true) {
+            int next = base.get(state) + code;
+            if (next < check.length() && check.get(next) == state) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail.get(state);
+        }
+    }
+
+    private char fold(char c) {
+        return caseSensitive ? c : LOWER_CASE[c];
+    }
+
+    /**
+     * 规范化后字符的编码，被忽略的字符返回 IGNORE_CODE
+     */
+    private int codeOf(int[] codes, char mapped) {
+        return mapped == CharNormalizer.IGNORE ? IGNORE_CODE : codes[fold(mapped)];
     }
-    
+
+    /**
+     * 模式在自动机中的键：规范化后再做大小写折叠
+     */
+    private String toKey(CharSequence pattern) {
+        return toKey(pattern, normalizer, caseSensitive);
+    }
+
+    private static String toKey(CharSequence pattern, CharNormalizer normalizer, boolean caseSensitive) {
+        String normalized = normalizer.normalize(pattern);
+        if (caseSensitive) return normalized;
+
+        char[] chars = normalized.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = LOWER_CASE[chars[i]];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 根状态的转移决定了所有命中的第一个字符：原始字符 (规范化、折叠后) 的编码在根状态有转移时置位
+     * 颜色代码前缀按其作为普通字符时的编码判断，结果偏保守但不会漏判
+     */
+    private long[] computeStartChars() {
+        long[] bits = new long[(Character.MAX_VALUE + 1) >>> 6];
+        int rootBase = base.get(ROOT);
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            int code = charCodes[c];
+            if (code == COLOR_PREFIX_CODE) {
+                code = c == '&' ? ampersandCode : sectionCode;
+            }
+            if (code <= 0) continue;
+
+            int next = rootBase + code;
+            if (next < check.length() && check.get(next) == ROOT) {
+                bits[c >>> 6] |= 1L << c;
+            }
+        }
+        return bits;
+    }
+
+    private static IntArray copy(IntArray source, AutomatonStorage storage) {
+        int[] values = new int[source.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = source.get(i);
+        }
+        return IntArray.of(values, storage);
+    }
+
+    private static int maxOf(IntArray values) {
+        int max = 0;
+        for (int i = 0; i < values.length(); i++) {
+            max = Math.max(max, values.get(i));
+        }
+        return max;
+    }
+
+    private static int ringSize(int length) {
+        int size = 1;
+        while (size < length) size <<= 1;
+        return size;
+    }
+
+    /**
+     * 为字母表分配紧凑编码，出现频率高的字符编码更小，使双数组更紧凑
+     */
+    private static int[] assignCharCodes(int[] frequency) {
+        // (频率降序, 字符升序) 打包进 long 后排序
+        long[] entries = new long[frequency.length];
+        int size = 0;
+        for (int c = 0; c < frequency.length; c++) {
+            if (frequency[c] > 0) {
+                entries[size++] = ((long) (Integer.MAX_VALUE - frequency[c]) << 16) | c;
+            }
+        }
+        Arrays.sort(entries, 0, size);
+
+        int[] codes = new int[Character.MAX_VALUE + 1];
+        for (int i = 0; i < size; i++) {
+            codes[(int) (entries[i] & 0xFFFF)] = i + 1;
+        }
+        return codes;
+    }
+
+    private static IntStream range(int from, int to, boolean parallel) {
+        IntStream stream = IntStream.range(from, to);
+        return parallel ? stream.parallel() : stream;
+    }
+
     /**
-     * 构建失败函数
+     * 把规范化和大小写折叠合并进编码表，使检测时每个原始字符只需一次查表
      */
-    private void buildFailureFunction() {
-        Queue<TrieNode> queue = new LinkedList<>();
-        
-        // 初始化根节点的直接子节点
-        for (TrieNode child : root.children.values()) {
-            child.fail = root;
-            queue.offer(child);
+    private int[] composeCharCodes(int[] codes) {
+        int[] composed = new int[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char mapped = normalizer.map((char) c);
+            if (normalizer.isStripColorCodes() && CharNormalizer.isColorCodePrefix((char) c)) {
+                composed[c] = COLOR_PREFIX_CODE;
+            } else {
+                composed[c] = codeOf(codes, mapped);
+            }
         }
-        
-        // BFS 构建失败函数
+        return composed;
+    }
+
+    /**
+     * 按 BFS 顺序把临时 Trie 放入双数组，并按放置顺序记录各状态
+     * 放置依赖空闲格的全局状态，必须顺序进行；失败链接随后由 {@link DoubleArrayBuilder#computeLinks(boolean)} 计算
+     */
+    private static DoubleArrayBuilder compile(TrieNode root, int[] codes) {
+        DoubleArrayBuilder builder = new DoubleArrayBuilder();
+        builder.output[ROOT] = root.patternId;
+        root.slot = ROOT;
+
+        Queue<TrieNode> queue = new ArrayDeque<>();
+        queue.offer(root);
+
         while (!queue.isEmpty()) {
             TrieNode current = queue.poll();
-            
+            if (current.children.isEmpty()) continue;
+
+            // 按编码排序子节点，保证布局确定
+            int size = current.children.size();
+            int[] childCodes = new int[size];
+            TrieNode[] childNodes = new TrieNode[size];
+            int index = 0;
             for (Map.Entry<Character, TrieNode> entry : current.children.entrySet()) {
-                char c = entry.getKey();
-                TrieNode child = entry.getValue();
+                childCodes[index] = codes[entry.getKey()];
+                childNodes[index] = entry.getValue();
+                index++;
+            }
+            sortByCode(childCodes, childNodes);
+
+            int begin = builder.findBase(childCodes);
+            builder.base[current.slot] = begin;
+
+            for (int i = 0; i < size; i++) {
+                TrieNode child = childNodes[i];
+                int slot = begin + childCodes[i];
+                child.slot = slot;
+                builder.check[slot] = current.slot;
+                builder.output[slot] = child.patternId;
+                builder.depth[slot] = builder.depth[current.slot] + 1;
+                builder.placed(slot);
                 queue.offer(child);
-                
-                // 寻找失败节点
-                TrieNode fail = current.fail;
-                while (fail != null && !fail.children.containsKey(c)) {
-                    fail = fail.fail;
+            }
+        }
+
+        return builder;
+    }
+
+    private static void sortByCode(int[] codes, TrieNode[] nodes) {
+        // 子节点数量通常很少，插入排序即可
+        for (int i = 1; i < codes.length; i++) {
+            int code = codes[i];
+            TrieNode node = nodes[i];
+            int j = i - 1;
+            while (j >= 0 && codes[j] > code) {
+                codes[j + 1] = codes[j];
+                nodes[j + 1] = nodes[j];
+                j--;
+            }
+            codes[j + 1] = code;
+            nodes[j + 1] = node;
+        }
+    }
+
+    /**
+     * 双数组构建期的可增长缓冲区
+     * 空闲格通过双向链表串联，寻找 base 时只需遍历空闲格
+     */
+    private static class DoubleArrayBuilder {
+        private static final int MAX_PROBES = 512;
+
+        int[] base = new int[1024];
+        int[] check = new int[1024];
+        int[] fail = new int[1024];
+        int[] output = new int[1024];
+        int[] dict = new int[1024];
+        int[] depth = new int[1024];
+        int[] nextFree = new int[1024];
+        int[] prevFree = new int[1024];
+        /** 按 BFS 顺序放置的状态，深度单调不减 */
+        int[] placedSlots = new int[1024];
+        int placedCount;
+        int firstFree;
+        int scanStart;
+        int maxSlot = ROOT;
+
+        DoubleArrayBuilder() {
+            Arrays.fill(check, FREE);
+            Arrays.fill(output, -1);
+            check[ROOT] = ROOT_MARK;
+            linkFree(1, check.length);
+            firstFree = 1;
+            scanStart = 1;
+        }
+
+        /**
+         * 寻找能容纳全部子编码的 base 值，并占用对应的格
+         */
+        int findBase(int[] codes) {
+            int minCode = codes[0];
+            int maxCode = codes[codes.length - 1];
+            int pos = scanStart;
+            int probes = 0;
+
+            outer:
+            while (true) {
+                // pos 必须是空闲格，且对应的 base 不能为负
+                while (pos - minCode < 0) {
+                    pos = nextFreeSlot(pos);
+                }
+                int begin = pos - minCode;
+                ensureCapacity(begin + maxCode + 1);
+
+                for (int i = 1; i < codes.length; i++) {
+                    if (check[begin + codes[i]] != FREE) {
+                        pos = nextFreeSlot(pos);
+                        probes++;
+                        continue outer;
+                    }
+                }
+
+                // 前部空闲格过于零散时放弃它们，避免后续搜索反复扫描
+                if (probes > MAX_PROBES) {
+                    scanStart = pos;
+                }
+                for (int code : codes) {
+                    occupy(begin + code);
+                }
+                maxSlot = Math.max(maxSlot, begin + maxCode);
+                return begin;
+            }
+        }
+
+        void placed(int slot) {
+            if (placedCount == placedSlots.length) {
+                placedSlots = Arrays.copyOf(placedSlots, placedCount * 2);
+            }
+            placedSlots[placedCount++] = slot;
+        }
+
+        /**
+         * 逐层计算失败链接和字典后缀链接
+         * 失败目标的深度严格小于当前状态，同一层的状态只读取更浅层的结果、只写入自身的格，
+         * 因此层内可以并行计算，层与层之间的 join 保证可见性；结果与顺序计算完全相同
+         */
+        void computeLinks(boolean parallel) {
+            int from = 0;
+            while (from < placedCount) {
+                int level = depth[placedSlots[from]];
+                int to = from;
+                while (to < placedCount && depth[placedSlots[to]] == level) to++;
+
+                range(from, to, parallel && to - from >= PARALLEL_LEVEL_THRESHOLD)
+                        .forEach(i -> link(placedSlots[i]));
+                from = to;
+            }
+        }
+
+        private void link(int slot) {
+            int parent = check[slot];
+            int failSlot = parent == ROOT ? ROOT : failTarget(fail[parent], slot - base[parent]);
+            fail[slot] = failSlot;
+            dict[slot] = output[failSlot] >= 0 ? failSlot : dict[failSlot];
+        }
+
+        /**
+         * 在已放置部分沿失败链查找 code 的转移目标
+         */
+        int failTarget(int state, int code) {
+            while (true) {
+                int next = base[state] + code;
+                if (next < check.length && check[next] == state) {
+                    return next;
+                }
+                if (state == ROOT) {
+                    return ROOT;
                 }
-                
-                child.fail = (fail != null) ? fail.children.get(c) : root;
-                
-                // 合并输出
-                child.output.addAll(child.fail.output);
+                state = fail[state];
+            }
+        }
+
+        private int nextFreeSlot(int pos) {
+            int next = nextFree[pos];
+            if (next >= check.length) {
+                ensureCapacity(check.length + 1);
+                next = nextFree[pos];
+            }
+            return next;
+        }
+
+        private void occupy(int slot) {
+            // 先标记为非空闲，由调用方写入真正的父状态
+            check[slot] = ROOT_MARK;
+            int prev = prevFree[slot];
+            int next = nextFree[slot];
+            if (slot == scanStart) {
+                scanStart = next;
+            }
+            if (slot == firstFree) {
+                firstFree = next;
+            } else {
+                nextFree[prev] = next;
+            }
+            if (next < prevFree.length) {
+                prevFree[next] = prev;
+            }
+        }
+
+        private void linkFree(int from, int to) {
+            for (int i = from; i < to; i++) {
+                nextFree[i] = i + 1;
+                prevFree[i] = i - 1;
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= check.length) return;
+
+            int oldLength = check.length;
+            int newLength = Math.max(required, oldLength * 2);
+            base = Arrays.copyOf(base, newLength);
+            check = Arrays.copyOf(check, newLength);
+            fail = Arrays.copyOf(fail, newLength);
+            output = Arrays.copyOf(output, newLength);
+            dict = Arrays.copyOf(dict, newLength);
+            depth = Arrays.copyOf(depth, newLength);
+            nextFree = Arrays.copyOf(nextFree, newLength);
+            prevFree = Arrays.copyOf(prevFree, newLength);
+            Arrays.fill(check, oldLength, newLength, FREE);
+            Arrays.fill(output, oldLength, newLength, -1);
+
+            // 把新增的格接到空闲链表末尾 (旧末尾的 next 恰好指向 oldLength)
+            linkFree(oldLength, newLength);
+            prevFree[oldLength] = lastFreeBefore(oldLength);
+        }
+
+        private int lastFreeBefore(int index) {
+            for (int i = index - 1; i > ROOT; i--) {
+                if (check[i] == FREE) return i;
             }
+            return ROOT;
         }
     }
-    
+
+    /**
+     * 匹配回调
+     */
+    public interface MatchHandler {
+        /**
+         * @param patternId 模式编号，可通过 {@link #getPattern(int)} 获取原始模式
+         * @param start 命中起始位置 (含)，流式搜索时始于此前文本的命中为负数
+         * @param end 命中结束位置 (含)
+         * @return 返回 false 时立即停止搜索
+         */
+        boolean onMatch(int patternId, int start, int end);
+    }
+
     /**
-     * Trie 树节点
+     * 构建期使用的临时 Trie 节点，编译完成后即被丢弃
      */
     private static class TrieNode {
-        Map<Character, TrieNode> children = new HashMap<>();
-        TrieNode fail;
-        Set<String> output = new HashSet<>();
+        final Map<Character, TrieNode> children = new HashMap<>();
+        int patternId = -1;
+        int slot;
     }
-    
+
     /**
      * 匹配结果
      */
@@ -140,20 +1057,20 @@ public class AhoCorasick {
         private final String pattern;
         private final int start;
         private final int end;
-        
+
         public MatchResult(String pattern, int start, int end) {
             this.pattern = pattern;
             this.start = start;
             this.end = end;
         }
-        
+
         public String getPattern() { return pattern; }
         public int getStart() { return start; }
         public int getEnd() { return end; }
-        
+
         @Override
         public String toString() {
             return String.format("Match{pattern='%s', start=%d, end=%d}", pattern, start, end);
         }
     }
-}
\ No newline at end of file
+}
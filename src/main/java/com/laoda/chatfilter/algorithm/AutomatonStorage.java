@@ -0,0 +1,30 @@
+package com.laoda.chatfilter.algorithm;
+
+/**
+ * 编译后自动机的存储方式
+ */
+public enum AutomatonStorage {
+    /** 基本类型数组，位于 Java 堆 */
+    HEAP,
+    /** 直接内存 ByteBuffer，不占用 Java 堆也不参与 GC 扫描 */
+    DIRECT,
+    /** 直接引用编译缓存文件的内存映射，由操作系统按需换入换出；没有缓存文件时等同 DIRECT */
+    MAPPED;
+
+    public static AutomatonStorage fromString(String storage) {
+        if (storage == null) return HEAP;
+
+        try {
+            return AutomatonStorage.valueOf(storage.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return HEAP;
+        }
+    }
+
+    /**
+     * 是否存放在 Java 堆之外
+     */
+    public boolean isOffHeap() {
+        return this != HEAP;
+    }
+}
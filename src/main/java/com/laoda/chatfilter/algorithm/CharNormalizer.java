@@ -0,0 +1,295 @@
+package com.laoda.chatfilter.algorithm;
+
+/**
+ * 字符规范化表
+ * 预先计算好的 char -> char 映射，把全角字符、繁体字、形近字母等变体折叠为统一形式，
+ * 并标记零宽字符、分隔符、emoji 等应被忽略的噪声字符。映射表在构建自动机时合并进字符编码表，
+ * 检测时不产生额外的字符串拷贝，也不需要调用 java.text.Normalizer。
+ *
+ * 实例不可变，只在配置重载时重新构建。
+ */
+public final class CharNormalizer {
+
+    /** 映射到该值的字符在匹配时被忽略 (U+FFFF 是非字符，不会出现在正常文本中) */
+    public static final char IGNORE = '\uFFFF';
+
+    /** 不做任何映射的规范化表 */
+    public static final CharNormalizer NONE = new Builder().build();
+
+    // 常见繁体字 -> 简体字
+    private static final String TRADITIONAL =
+            "媽腦殘廢雞殺賤豬滾幹乾們這個國義黨東車說話語讓給對時會來過還後麼開關門問間聽見現號點錢買賣發頭臉學習體靈戰爭愛親孫為無與萬億氣電網絡線紅綠藍黃狀態權獨穢騷雜種爛屍槍彈賭傳銷詐騙偽幣陰陽經濟產書畫區圖導領員長麗聖魯鈍蟲腫癡廁糞髒臟懶驢馬鳥龜鴨貓蝦魚屬紀輪勞動壞惡噁瘋顛醜罵鬥腳擊強姦亂倫嬰兒爺禮讀寫煩厭討嘔弒謀譴責賊盜搶綁嚇滅燒藥癮針嗎嗚鬧聯繫係戲遊歡樂貨議論選舉憲軍務團隊砲艦機飛實際證據處罰衛護醫齒膽鬆頸膠錯誤";
+    private static final String SIMPLIFIED =
+            "妈脑残废鸡杀贱猪滚干干们这个国义党东车说话语让给对时会来过还后么开关门问间听见现号点钱买卖发头脸学习体灵战争爱亲孙为无与万亿气电网络线红绿蓝黄状态权独秽骚杂种烂尸枪弹赌传销诈骗伪币阴阳经济产书画区图导领员长丽圣鲁钝虫肿痴厕粪脏脏懒驴马鸟龟鸭猫虾鱼属纪轮劳动坏恶恶疯颠丑骂斗脚击强奸乱伦婴儿爷礼读写烦厌讨呕弑谋谴责贼盗抢绑吓灭烧药瘾针吗呜闹联系系戏游欢乐货议论选举宪军务团队炮舰机飞实际证据处罚卫护医齿胆松颈胶错误";
+
+    // 西里尔、希腊等字母中与拉丁字母形近的字符
+    private static final String HOMOGLYPHS =
+            "аАвВеЕёЁкКмМнНоОрРсСтТуУхХѕЅіІјЈԁԀԛԚԝԜɡꞬαΑβΒεΕιΙκΚνΝοΟρΡτΤυΥχΧωΩѵѴӏӀɩƖⅰⅠⅴⅤⅹⅩℓ";
+    private static final String LATIN =
+            "aAbBeEeEkKmMhHoOpPcCtTyYxXsSiIjJdDqQwWgGaAbBeEiIkKvVoOpPtTuUxXwWvVlLiIiIvVxXl";
+
+    // 零宽及其他不可见的格式字符
+    private static final String ZERO_WIDTH = "\u00AD\u034F\u180E\u200B\u200C\u200D\u200E\u200F\u2060\u2061\u2062\u2063\u2064\uFEFF";
+
+    // emoji 变体选择符和组合用键帽符号
+    private static final String EMOJI_MODIFIERS = "\uFE00\uFE01\uFE02\uFE03\uFE04\uFE05\uFE06\uFE07"
+            + "\uFE08\uFE09\uFE0A\uFE0B\uFE0C\uFE0D\uFE0E\uFE0F\u20E3";
+
+    private final char[] table;
+    private final boolean stripColorCodes;
+    private final boolean collapseRepeats;
+    private final boolean identity;
+    private final boolean skipsCharacters;
+
+    private CharNormalizer(char[] table, boolean stripColorCodes, boolean collapseRepeats) {
+        this.table = table;
+        this.stripColorCodes = stripColorCodes;
+        this.collapseRepeats = collapseRepeats;
+
+        boolean same = !stripColorCodes && !collapseRepeats;
+        boolean skips = stripColorCodes || collapseRepeats;
+        for (int c = 0; c < IGNORE; c++) {
+            same &= table[c] == c;
+            skips |= table[c] == IGNORE;
+        }
+        this.identity = same;
+        this.skipsCharacters = skips;
+    }
+
+    /**
+     * 映射单个字符，返回 {@link #IGNORE} 表示该字符应被忽略
+     */
+    public char map(char c) {
+        return table[c];
+    }
+
+    /**
+     * 是否去除 &amp; 和 § 开头的颜色代码
+     */
+    public boolean isStripColorCodes() {
+        return stripColorCodes;
+    }
+
+    /**
+     * 是否跳过连续重复的字符 ("傻傻傻逼" 按 "傻逼" 匹配)
+     * 只作用于待检测文本，模式本身的重复字符保持不变
+     */
+    public boolean isCollapseRepeats() {
+        return collapseRepeats;
+    }
+
+    /**
+     * 是否为不做任何处理的规范化表
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * 是否会在匹配时跳过某些字符 (此时命中的起止位置不能直接由模式长度推算)
+     */
+    public boolean skipsCharacters() {
+        return skipsCharacters;
+    }
+
+    /**
+     * 规范化规则的指纹 (FNV-1a)，规则相同的表指纹相同，用于判断编译缓存是否仍然有效
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        for (char mapped : table) {
+            hash = (hash ^ mapped) * 0x100000001b3L;
+        }
+        hash = (hash ^ (stripColorCodes ? 1 : 0)) * 0x100000001b3L;
+        return (hash ^ (collapseRepeats ? 1 : 0)) * 0x100000001b3L;
+    }
+
+    /**
+     * 判断字符是否为颜色代码前缀
+     */
+    public static boolean isColorCodePrefix(char c) {
+        return c == '&' || c == '§';
+    }
+
+    /**
+     * 判断字符是否为合法的颜色/格式代码 (0-9 a-f k-o r x)
+     */
+    public static boolean isColorCodeChar(char c) {
+        char lower = (char) (c | 0x20);
+        return (c >= '0' && c <= '9') || (lower >= 'a' && lower <= 'f')
+                || (lower >= 'k' && lower <= 'o') || lower == 'r' || lower == 'x';
+    }
+
+    /**
+     * 把整段文本规范化为字符串，与自动机逐字符处理的规则一致 (构建词库时使用)
+     */
+    public String normalize(CharSequence text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (stripColorCodes && isColorCodePrefix(c)
+                    && i + 1 < text.length() && isColorCodeChar(text.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            char mapped = table[c];
+            if (mapped != IGNORE) {
+                builder.append(mapped);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 规范化表构建器
+     */
+    public static final class Builder {
+
+        private final char[] table = new char[Character.MAX_VALUE + 1];
+        private boolean stripColorCodes;
+        private boolean collapseRepeats;
+
+        public Builder() {
+            for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                table[c] = (char) c;
+            }
+        }
+
+        /**
+         * 全角 ASCII 字符和全角空格转为半角
+         */
+        public Builder foldFullWidth() {
+            for (char c = '\uFF01'; c <= '\uFF5E'; c++) {
+                table[c] = (char) (c - 0xFEE0);
+            }
+            table['\u3000'] = ' ';
+            return this;
+        }
+
+        /**
+         * 忽略零宽字符
+         */
+        public Builder stripZeroWidth() {
+            for (int i = 0; i < ZERO_WIDTH.length(); i++) {
+                table[ZERO_WIDTH.charAt(i)] = IGNORE;
+            }
+            return this;
+        }
+
+        /**
+         * 去除 &amp; 和 § 颜色代码
+         */
+        public Builder stripColorCodes() {
+            this.stripColorCodes = true;
+            return this;
+        }
+
+        /**
+         * 常见繁体字转为简体字
+         */
+        public Builder mapTraditional() {
+            return mapAll(TRADITIONAL, SIMPLIFIED);
+        }
+
+        /**
+         * 形近的西里尔、希腊字母转为拉丁字母
+         */
+        public Builder mapHomoglyphs() {
+            return mapAll(HOMOGLYPHS, LATIN);
+        }
+
+        /**
+         * 忽略空白字符 (按映射后的字符判断，全角空格同样被忽略)
+         */
+        public Builder skipWhitespace() {
+            for (int c = 0; c < IGNORE; c++) {
+                char mapped = table[c];
+                if (Character.isWhitespace(mapped) || Character.isSpaceChar(mapped)) {
+                    table[c] = IGNORE;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 忽略标点和 ASCII/数学/货币符号，如 "s.b"、"f_u_c_k"
+         */
+        public Builder skipPunctuation() {
+            for (int c = 0; c < IGNORE; c++) {
+                if (isPunctuation(table[c])) {
+                    table[c] = IGNORE;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 忽略 emoji 和其他图形符号
+         * 补充平面字符 (大部分 emoji) 以代理对出现，代理字符整体被忽略
+         */
+        public Builder skipEmoji() {
+            for (int c = 0; c < IGNORE; c++) {
+                char mapped = table[c];
+                int type = Character.getType(mapped);
+                if (type == Character.OTHER_SYMBOL || type == Character.SURROGATE
+                        || EMOJI_MODIFIERS.indexOf(mapped) >= 0) {
+                    table[c] = IGNORE;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 跳过待检测文本中连续重复的字符
+         */
+        public Builder collapseRepeats() {
+            this.collapseRepeats = true;
+            return this;
+        }
+
+        /**
+         * 忽略指定字符
+         */
+        public Builder ignore(char c) {
+            table[c] = IGNORE;
+            return this;
+        }
+
+        /**
+         * 自定义映射
+         */
+        public Builder map(char from, char to) {
+            table[from] = to;
+            return this;
+        }
+
+        public CharNormalizer build() {
+            return new CharNormalizer(table.clone(), stripColorCodes, collapseRepeats);
+        }
+
+        private static boolean isPunctuation(char c) {
+            switch (Character.getType(c)) {
+                case Character.CONNECTOR_PUNCTUATION:
+                case Character.DASH_PUNCTUATION:
+                case Character.START_PUNCTUATION:
+                case Character.END_PUNCTUATION:
+                case Character.INITIAL_QUOTE_PUNCTUATION:
+                case Character.FINAL_QUOTE_PUNCTUATION:
+                case Character.OTHER_PUNCTUATION:
+                case Character.MATH_SYMBOL:
+                case Character.CURRENCY_SYMBOL:
+                case Character.MODIFIER_SYMBOL:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private Builder mapAll(String from, String to) {
+            for (int i = 0; i < from.length(); i++) {
+                table[from.charAt(i)] = to.charAt(i);
+            }
+            return this;
+        }
+    }
+}
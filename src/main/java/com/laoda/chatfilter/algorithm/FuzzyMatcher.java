@@ -0,0 +1,395 @@
+package com.laoda.chatfilter.algorithm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * 有界编辑距离的模糊匹配器
+ * 用于发现 "fcuk"、"shiit" 这类拼写变形，编辑操作包括插入、删除、替换和相邻交换。
+ *
+ * 采用鸽巢原理过滤：允许 k 次编辑的词被切成 k+1 段，k 次编辑之后至少有一段原样出现在消息里；
+ * 跨越分界的相邻交换会同时破坏两段，因此每个分界再登记两段交换了分界字符的片段。
+ * 所有片段编译进一个 Aho-Corasick 自动机，
+ * 对消息做一次线性扫描，只在片段命中的位置附近对对应的词做带状动态规划校验，
+ * 因此耗时随消息长度近似线性，而不是逐词计算编辑距离。
+ *
+ * 文本使用与字符串匹配器相同的 {@link CharNormalizer} 和大小写设置逐字符规范化；
+ * 校验时同时记录对齐的起止位置，{@link #search} 据此报告命中在原文中的区间，用于替换。
+ * 实例不可变，可被多个线程并发使用。
+ */
+public final class FuzzyMatcher {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final boolean caseSensitive;
+    private final CharNormalizer normalizer;
+
+    private final String[] words;
+    private final char[][] keys;
+    private final int[] distances;
+
+    // 片段自动机：片段编号 -> 成对存放的 (词编号, 片段在词中的偏移)
+    private final AhoCorasick pieceMatcher;
+    private final int[][] pieceOwners;
+
+    /**
+     * @param distanceByLength 规范化后的最小词长 -> 允许的最大编辑距离，
+     *                         短于最小项的词不参与模糊匹配
+     */
+    public FuzzyMatcher(Collection<String> words, boolean caseSensitive, CharNormalizer normalizer,
+                        NavigableMap<Integer, Integer> distanceByLength) {
+        this.caseSensitive = caseSensitive;
+        this.normalizer = normalizer;
+
+        List<String> acceptedWords = new ArrayList<>();
+        List<char[]> acceptedKeys = new ArrayList<>();
+        List<Integer> acceptedDistances = new ArrayList<>();
+        Map<String, List<Integer>> owners = new LinkedHashMap<>();
+
+        for (String word : words) {
+            if (word == null || word.isEmpty()) continue;
+
+            char[] key = fold(normalizer.normalize(word).toCharArray());
+            Map.Entry<Integer, Integer> rule = distanceByLength.floorEntry(key.length);
+            if (rule == null || rule.getValue() <= 0) continue;
+
+            int distance = rule.getValue();
+            int wordId = acceptedWords.size();
+            acceptedWords.add(word);
+            acceptedKeys.add(key);
+            acceptedDistances.add(distance);
+
+            // 把词均匀切成 k+1 段 (词太短时每个字符一段)
+            int pieces = Math.min(distance + 1, key.length);
+            for (int i = 0; i < pieces; i++) {
+                int from = i * key.length / pieces;
+                int to = (i + 1) * key.length / pieces;
+                addPiece(owners, new String(key, from, to - from), wordId, from);
+
+                if (i > 0) {
+                    // 分界两侧字符交换后，左段的末字符和右段的首字符分别变成对方
+                    int previousFrom = (i - 1) * key.length / pieces;
+                    addPiece(owners, new String(key, previousFrom, from - previousFrom - 1) + key[from],
+                            wordId, previousFrom);
+                    addPiece(owners, key[from - 1] + new String(key, from + 1, to - from - 1),
+                            wordId, from);
+                }
+            }
+        }
+
+        this.words = acceptedWords.toArray(new String[0]);
+        this.keys = acceptedKeys.toArray(new char[0][]);
+        this.distances = new int[acceptedDistances.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = acceptedDistances.get(i);
+        }
+
+        // 片段已是规范化后的文本，按原样区分大小写构建
+        this.pieceMatcher = new AhoCorasick(owners.keySet(), true);
+        this.pieceOwners = new int[owners.size()][];
+        int pieceId = 0;
+        for (List<Integer> list : owners.values()) {
+            int[] pairs = new int[list.size()];
+            for (int i = 0; i < pairs.length; i++) {
+                pairs[i] = list.get(i);
+            }
+            pieceOwners[pieceId++] = pairs;
+        }
+    }
+
+    /**
+     * 查找第一个在编辑距离内出现的词，未命中返回 null
+     */
+    public String findFirst(CharSequence text) {
+        return findFirst(text, Collections.<String>emptySet());
+    }
+
+    /**
+     * 查找第一个在编辑距离内出现且不在 excluded 中的词，未命中返回 null
+     */
+    public String findFirst(CharSequence text, Set<String> excluded) {
+        if (text == null || words.length == 0) return null;
+
+        Scratch scratch = SCRATCH.get();
+        int length = normalizeInto(text, scratch);
+        if (length == 0) return null;
+
+        scratch.begin(this, excluded, null);
+        pieceMatcher.search(scratch.text, scratch);
+        String result = scratch.result;
+        scratch.end();
+        return result;
+    }
+
+    /**
+     * 报告所有在编辑距离内出现且不在 excluded 中的词，模式编号见 {@link #getWord(int)}，
+     * 起止位置 (含) 指向原文中与词对齐的片段；同一处命中可能被不同片段重复报告
+     */
+    public void search(CharSequence text, Set<String> excluded, AhoCorasick.MatchHandler handler) {
+        if (text == null || words.length == 0) return;
+
+        Scratch scratch = SCRATCH.get();
+        if (normalizeInto(text, scratch) == 0) return;
+
+        scratch.begin(this, excluded, handler);
+        try {
+            pieceMatcher.search(scratch.text, scratch);
+        } finally {
+            scratch.end();
+        }
+    }
+
+    /**
+     * 根据 {@link #search} 报告的模式编号获取词
+     */
+    public String getWord(int wordId) {
+        return words[wordId];
+    }
+
+    /**
+     * 参与模糊匹配的词数量
+     */
+    public int getWordCount() {
+        return words.length;
+    }
+
+    /**
+     * 片段数量
+     */
+    public int getPieceCount() {
+        return pieceOwners.length;
+    }
+
+    /**
+     * 片段在 text[start..end] 处命中，校验所有拥有该片段的词
+     */
+    private boolean verifyPiece(Scratch scratch, int pieceId, int start) {
+        int[] pairs = pieceOwners[pieceId];
+        for (int i = 0; i < pairs.length; i += 2) {
+            int wordId = pairs[i];
+            int offset = pairs[i + 1];
+            if (!scratch.excluded.isEmpty() && scratch.excluded.contains(words[wordId])) continue;
+
+            char[] key = keys[wordId];
+            int distance = distances[wordId];
+            int from = Math.max(0, start - offset - distance);
+            int to = Math.min(scratch.text.length, start - offset + key.length + distance);
+            long span = align(key, scratch.text.chars, from, to, distance, scratch);
+            if (span < 0) continue;
+
+            if (scratch.handler == null) {
+                scratch.result = words[wordId];
+                return true;
+            }
+            int alignedStart = (int) (span >>> 32);
+            int alignedEnd = Math.max(alignedStart, (int) span - 1);
+            if (!scratch.handler.onMatch(wordId, scratch.origins[alignedStart], scratch.origins[alignedEnd])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 半全局的限制性编辑距离 (optimal string alignment)：
+     * 模式必须完整对齐，文本窗口内的起止位置任意，最小距离不超过 k 即命中。
+     * 每格同时记录该对齐在文本中的起点，命中时返回距离最小的对齐 (起点 << 32 | 终点，终点不含)，未命中返回 -1
+     */
+    private static long align(char[] pattern, char[] text, int from, int to, int k, Scratch scratch) {
+        int width = to - from;
+        if (width < pattern.length - k) return -1;
+
+        int[] previous2 = scratch.row(0, width + 1);
+        int[] previous = scratch.row(1, width + 1);
+        int[] current = scratch.row(2, width + 1);
+        int[] startPrevious2 = scratch.row(3, width + 1);
+        int[] startPrevious = scratch.row(4, width + 1);
+        int[] startCurrent = scratch.row(5, width + 1);
+
+        for (int j = 0; j <= width; j++) {
+            previous[j] = 0;
+            startPrevious[j] = j;
+        }
+
+        for (int i = 1; i <= pattern.length; i++) {
+            char p = pattern[i - 1];
+            current[0] = i;
+            startCurrent[0] = 0;
+            int rowMin = i;
+            for (int j = 1; j <= width; j++) {
+                char t = text[from + j - 1];
+                int cost = p == t ? 0 : 1;
+                // 距离相同时取起点靠后的对齐，替换的区间更紧凑
+                int value = previous[j - 1] + cost;
+                int start = startPrevious[j - 1];
+                if (previous[j] + 1 < value || (previous[j] + 1 == value && startPrevious[j] > start)) {
+                    value = previous[j] + 1;
+                    start = startPrevious[j];
+                }
+                if (current[j - 1] + 1 < value || (current[j - 1] + 1 == value && startCurrent[j - 1] > start)) {
+                    value = current[j - 1] + 1;
+                    start = startCurrent[j - 1];
+                }
+                if (i > 1 && j > 1 && p == text[from + j - 2] && pattern[i - 2] == t
+                        && previous2[j - 2] + 1 < value) {
+                    value = previous2[j - 2] + 1;
+                    start = startPrevious2[j - 2];
+                }
+                current[j] = value;
+                startCurrent[j] = start;
+                if (value < rowMin) rowMin = value;
+            }
+            // 整行都超过 k 时后续行只会更大
+            if (rowMin > k) return -1;
+
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+            recycled = startPrevious2;
+            startPrevious2 = startPrevious;
+            startPrevious = startCurrent;
+            startCurrent = recycled;
+        }
+
+        // 距离相同时取终点靠后的对齐，替换时不遗漏交换到末尾的字符
+        int best = -1;
+        for (int j = 0; j <= width; j++) {
+            if (previous[j] <= k && (best < 0 || previous[j] <= previous[best])) {
+                best = j;
+            }
+        }
+        return best < 0 ? -1 : (long) (from + startPrevious[best]) << 32 | (from + best);
+    }
+
+    /**
+     * 与字符串匹配器相同的规则逐字符规范化，写入线程本地缓冲区
+     */
+    private int normalizeInto(CharSequence text, Scratch scratch) {
+        int length = text.length();
+        char[] chars = scratch.chars(length);
+        int[] origins = scratch.origins;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (normalizer.isStripColorCodes() && CharNormalizer.isColorCodePrefix(c)
+                    && i + 1 < length && CharNormalizer.isColorCodeChar(text.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            char mapped = normalizer.map(c);
+            if (mapped == CharNormalizer.IGNORE) continue;
+            origins[count] = i;
+            chars[count++] = caseSensitive ? mapped : Character.toLowerCase(mapped);
+        }
+        scratch.text.reset(chars, count);
+        return count;
+    }
+
+    private static void addPiece(Map<String, List<Integer>> owners, String piece, int wordId, int offset) {
+        List<Integer> list = owners.computeIfAbsent(piece, k -> new ArrayList<>());
+        list.add(wordId);
+        list.add(offset);
+    }
+
+    private char[] fold(char[] chars) {
+        if (!caseSensitive) {
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = Character.toLowerCase(chars[i]);
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * 线程本地的检测缓冲区，同时作为片段命中的回调，避免每条消息分配对象
+     */
+    private static final class Scratch implements AhoCorasick.MatchHandler {
+        final CharArraySequence text = new CharArraySequence();
+        final int[][] rows = new int[6][];
+        char[] buffer = new char[256];
+        /** 规范化后每个字符在原文中的位置 */
+        int[] origins = new int[256];
+
+        FuzzyMatcher matcher;
+        Set<String> excluded;
+        AhoCorasick.MatchHandler handler;
+        String result;
+
+        char[] chars(int length) {
+            if (buffer.length < length) {
+                buffer = new char[Math.max(length, buffer.length * 2)];
+                origins = new int[buffer.length];
+            }
+            return buffer;
+        }
+
+        int[] row(int index, int length) {
+            if (rows[index] == null || rows[index].length < length) {
+                rows[index] = new int[Math.max(length, 64)];
+            }
+            return rows[index];
+        }
+
+        /**
+         * @param handler 为 null 时在第一个命中处停止并记录 result，否则报告全部命中
+         */
+        void begin(FuzzyMatcher matcher, Set<String> excluded, AhoCorasick.MatchHandler handler) {
+            this.matcher = matcher;
+            this.excluded = excluded;
+            this.handler = handler;
+            this.result = null;
+        }
+
+        void end() {
+            this.matcher = null;
+            this.excluded = null;
+            this.handler = null;
+            this.result = null;
+        }
+
+        @Override
+        public boolean onMatch(int patternId, int start, int end) {
+            return !matcher.verifyPiece(this, patternId, start);
+        }
+    }
+
+    /**
+     * 复用字符数组的 CharSequence
+     */
+    private static final class CharArraySequence implements CharSequence {
+        char[] chars;
+        int length;
+
+        void reset(char[] chars, int length) {
+            this.chars = chars;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
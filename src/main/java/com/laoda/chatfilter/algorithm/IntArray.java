@@ -0,0 +1,114 @@
+package com.laoda.chatfilter.algorithm;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * 自动机使用的定长只读 int 数组
+ * 堆内实现直接包装 int[]；堆外实现包装直接内存或文件映射的 ByteBuffer，
+ * 数据量再大也不增加 Java 堆占用和 GC 扫描的负担。
+ */
+abstract class IntArray {
+
+    abstract int get(int index);
+
+    abstract int length();
+
+    /**
+     * 写出为 "长度 + 大端序元素"，与 {@link #read(ByteBuffer, AutomatonStorage)} 对应
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        int length = length();
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(get(i));
+        }
+    }
+
+    /**
+     * 按存储方式保存 values，MAPPED 没有对应文件，按 DIRECT 处理
+     */
+    static IntArray of(int[] values, AutomatonStorage storage) {
+        if (!storage.isOffHeap()) {
+            return new Heap(values);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(values.length * 4).order(ByteOrder.nativeOrder());
+        buffer.asIntBuffer().put(values);
+        return new Buffer(buffer);
+    }
+
+    /**
+     * 读取 {@link #writeTo(DataOutputStream)} 写出的数组
+     * MAPPED 直接引用 source 中的数据，不做复制；其余方式复制到对应的存储
+     */
+    static IntArray read(ByteBuffer source, AutomatonStorage storage) {
+        int length = source.getInt();
+        ByteBuffer slice = slice(source, length * 4L);
+        switch (storage) {
+            case MAPPED:
+                return new Buffer(slice);
+            case DIRECT:
+                ByteBuffer direct = ByteBuffer.allocateDirect(slice.remaining());
+                direct.put(slice);
+                direct.flip();
+                return new Buffer(direct);
+            default:
+                int[] values = new int[length];
+                slice.asIntBuffer().get(values);
+                return new Heap(values);
+        }
+    }
+
+    /**
+     * 从 source 当前位置切出 bytes 字节的大端序视图，并把 source 的位置移到其后
+     */
+    static ByteBuffer slice(ByteBuffer source, long bytes) {
+        if (bytes < 0 || bytes > source.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer slice = source.slice();
+        slice.limit((int) bytes);
+        source.position(source.position() + (int) bytes);
+        return slice;
+    }
+
+    private static final class Heap extends IntArray {
+        private final int[] values;
+
+        Heap(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+    }
+
+    private static final class Buffer extends IntArray {
+        private final IntBuffer values;
+
+        Buffer(ByteBuffer buffer) {
+            this.values = buffer.asIntBuffer();
+        }
+
+        @Override
+        int get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        int length() {
+            return values.limit();
+        }
+    }
+}
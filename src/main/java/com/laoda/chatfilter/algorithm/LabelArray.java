@@ -0,0 +1,123 @@
+package com.laoda.chatfilter.algorithm;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * 自动机命中时报告的标签 (原始模式或敏感词)
+ * 堆外实现把所有标签的字符连续存放在 CharBuffer 中，按偏移表取出，
+ * 只有命中时才生成 String 对象。
+ */
+abstract class LabelArray {
+
+    abstract String get(int index);
+
+    abstract int size();
+
+    /**
+     * 写出为 "偏移表 (size + 1 项) + 字符总数 + 连续字符"
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        int size = size();
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] = offsets[i] + get(i).length();
+        }
+        IntArray.of(offsets, AutomatonStorage.HEAP).writeTo(out);
+        out.writeInt(offsets[size]);
+        for (int i = 0; i < size; i++) {
+            out.writeChars(get(i));
+        }
+    }
+
+    static LabelArray of(String[] labels, AutomatonStorage storage) {
+        if (!storage.isOffHeap()) {
+            return new Heap(labels);
+        }
+
+        int[] offsets = new int[labels.length + 1];
+        for (int i = 0; i < labels.length; i++) {
+            offsets[i + 1] = offsets[i] + labels[i].length();
+        }
+        CharBuffer chars = ByteBuffer.allocateDirect(offsets[labels.length] * 2).asCharBuffer();
+        for (String label : labels) {
+            chars.put(label);
+        }
+        return new Buffer(IntArray.of(offsets, storage), chars);
+    }
+
+    /**
+     * 读取 {@link #writeTo(DataOutputStream)} 写出的标签
+     */
+    static LabelArray read(ByteBuffer source, AutomatonStorage storage) {
+        IntArray offsets = IntArray.read(source, storage);
+        int totalChars = source.getInt();
+        ByteBuffer slice = IntArray.slice(source, totalChars * 2L);
+        if (offsets.length() == 0 || offsets.get(offsets.length() - 1) != totalChars) {
+            throw new IllegalArgumentException("标签数据不完整");
+        }
+
+        switch (storage) {
+            case MAPPED:
+                return new Buffer(offsets, slice.asCharBuffer());
+            case DIRECT:
+                ByteBuffer direct = ByteBuffer.allocateDirect(slice.remaining());
+                direct.put(slice);
+                direct.flip();
+                return new Buffer(offsets, direct.asCharBuffer());
+            default:
+                char[] chars = new char[totalChars];
+                slice.asCharBuffer().get(chars);
+                String[] labels = new String[offsets.length() - 1];
+                for (int i = 0; i < labels.length; i++) {
+                    labels[i] = new String(chars, offsets.get(i), offsets.get(i + 1) - offsets.get(i));
+                }
+                return new Heap(labels);
+        }
+    }
+
+    private static final class Heap extends LabelArray {
+        private final String[] labels;
+
+        Heap(String[] labels) {
+            this.labels = labels;
+        }
+
+        @Override
+        String get(int index) {
+            return labels[index];
+        }
+
+        @Override
+        int size() {
+            return labels.length;
+        }
+    }
+
+    private static final class Buffer extends LabelArray {
+        private final IntArray offsets;
+        private final CharBuffer chars;
+
+        Buffer(IntArray offsets, CharBuffer chars) {
+            this.offsets = offsets;
+            this.chars = chars;
+        }
+
+        @Override
+        String get(int index) {
+            int from = offsets.get(index);
+            char[] label = new char[offsets.get(index + 1) - from];
+            for (int i = 0; i < label.length; i++) {
+                label[i] = chars.get(from + i);
+            }
+            return new String(label);
+        }
+
+        @Override
+        int size() {
+            return offsets.length() - 1;
+        }
+    }
+}
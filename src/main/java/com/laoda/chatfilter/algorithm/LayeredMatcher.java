@@ -0,0 +1,293 @@
+package com.laoda.chatfilter.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 支持增量增删的分层匹配器
+ * 由一个大的基础自动机、一个只包含新增词的小增量自动机和基础自动机中被删除的编号组成。
+ * 单个词的增删只重建增量部分，耗时与增量大小成正比而与整个词库无关；
+ * 增量积累到一定程度后应在后台合并为新的基础自动机。
+ *
+ * 实例不可变，每次增删返回新实例。
+ * 模式编号统一编排：基础自动机的编号在前，增量自动机的编号依次排在其后。
+ */
+public final class LayeredMatcher {
+
+    private static final int[] NO_IDS = new int[0];
+
+    /** 流式检测的初始状态：两层自动机均位于根状态 */
+    public static final long START_STATE = pack(AhoCorasick.START_STATE, AhoCorasick.START_STATE);
+
+    private final AhoCorasick base;
+    private final AhoCorasick delta;
+    private final List<String> addedKeys;
+    private final List<String> addedLabels;
+    private final int[] removedIds;
+
+    public LayeredMatcher(AhoCorasick base) {
+        this(base, null, Collections.<String>emptyList(), Collections.<String>emptyList(), NO_IDS);
+    }
+
+    private LayeredMatcher(AhoCorasick base, AhoCorasick delta,
+                           List<String> addedKeys, List<String> addedLabels, int[] removedIds) {
+        this.base = base;
+        this.delta = delta;
+        this.addedKeys = addedKeys;
+        this.addedLabels = addedLabels;
+        this.removedIds = removedIds;
+    }
+
+    /**
+     * 返回添加了指定模式的新匹配器，模式已存在时返回自身
+     */
+    public LayeredMatcher withPattern(String pattern) {
+        return withPattern(pattern, Collections.singletonList(pattern));
+    }
+
+    /**
+     * 返回添加了带标签模式的新匹配器，命中 keys 中任一模式时报告 label
+     * 已被其他标签占用的模式保持原归属，与完整构建时 "先到先得" 的规则一致
+     */
+    public LayeredMatcher withPattern(String label, List<String> keys) {
+        int[] removed = removedIds;
+        List<String> newKeys = null;
+        List<String> newLabels = null;
+
+        for (String key : keys) {
+            if (key == null || key.isEmpty()) continue;
+
+            int baseId = base.findPatternId(key);
+            if (baseId >= 0) {
+                int index = Arrays.binarySearch(removed, baseId);
+                if (index < 0) continue;
+                if (base.isSameKey(base.getPattern(baseId), label)) {
+                    // 恢复之前被删除的基础词
+                    removed = removeAt(removed, index);
+                    continue;
+                }
+            }
+            if (delta != null && delta.findPatternId(key) >= 0) continue;
+
+            if (newKeys == null) {
+                newKeys = new ArrayList<>(addedKeys);
+                newLabels = new ArrayList<>(addedLabels);
+            }
+            newKeys.add(key);
+            newLabels.add(label);
+        }
+
+        if (newKeys == null) {
+            return removed == removedIds ? this
+                    : new LayeredMatcher(base, delta, addedKeys, addedLabels, removed);
+        }
+        return new LayeredMatcher(base, compileDelta(newKeys, newLabels),
+                Collections.unmodifiableList(newKeys), Collections.unmodifiableList(newLabels), removed);
+    }
+
+    /**
+     * 返回删除了指定模式的新匹配器，模式不存在时返回自身
+     */
+    public LayeredMatcher withoutPattern(String pattern) {
+        return withoutPattern(pattern, Collections.singletonList(pattern));
+    }
+
+    /**
+     * 返回删除了带标签模式的新匹配器，只删除归属于 label 的模式
+     */
+    public LayeredMatcher withoutPattern(String label, List<String> keys) {
+        int[] removed = removedIds;
+        List<String> newKeys = null;
+        List<String> newLabels = null;
+
+        for (String key : keys) {
+            if (key == null || key.isEmpty()) continue;
+
+            if (delta != null) {
+                int deltaId = delta.findPatternId(key);
+                if (deltaId >= 0 && base.isSameKey(delta.getPattern(deltaId), label)) {
+                    if (newKeys == null) {
+                        newKeys = new ArrayList<>(addedKeys);
+                        newLabels = new ArrayList<>(addedLabels);
+                    }
+                    // 规范化后相同的键在增量中只有一个编号，按编号找回列表中的位置
+                    for (int i = 0; i < newKeys.size(); i++) {
+                        if (delta.findPatternId(newKeys.get(i)) == deltaId) {
+                            newKeys.remove(i);
+                            newLabels.remove(i);
+                            break;
+                        }
+                    }
+                    continue;
+                }
+            }
+
+            int baseId = base.findPatternId(key);
+            if (baseId < 0 || !base.isSameKey(base.getPattern(baseId), label)) continue;
+
+            int index = Arrays.binarySearch(removed, baseId);
+            if (index < 0) {
+                removed = insertAt(removed, -index - 1, baseId);
+            }
+        }
+
+        if (newKeys == null) {
+            return removed == removedIds ? this
+                    : new LayeredMatcher(base, delta, addedKeys, addedLabels, removed);
+        }
+        return new LayeredMatcher(base, compileDelta(newKeys, newLabels),
+                Collections.unmodifiableList(newKeys), Collections.unmodifiableList(newLabels), removed);
+    }
+
+    /**
+     * 快速预过滤，返回 false 时文本一定不会命中任何模式
+     */
+    public boolean mayMatch(CharSequence text) {
+        return base.mayMatch(text) || (delta != null && delta.mayMatch(text));
+    }
+
+    /**
+     * 查找第一个命中的模式编号，未命中返回 -1
+     */
+    public int findFirstId(CharSequence text) {
+        if (delta != null) {
+            int id = delta.findFirstId(text);
+            if (id >= 0) return base.getPatternCount() + id;
+        }
+        return base.findFirstId(text, removedIds);
+    }
+
+    /**
+     * 检查文本是否包含任何模式，返回第一个命中的模式
+     */
+    public String findFirst(CharSequence text) {
+        int id = findFirstId(text);
+        return id >= 0 ? getPattern(id) : null;
+    }
+
+    /**
+     * 搜索文本中的所有匹配模式，每个命中回调一次
+     */
+    public void search(CharSequence text, AhoCorasick.MatchHandler handler) {
+        final boolean[] stopped = new boolean[1];
+        base.search(text, (patternId, start, end) -> {
+            if (Arrays.binarySearch(removedIds, patternId) >= 0) return true;
+            stopped[0] = !handler.onMatch(patternId, start, end);
+            return !stopped[0];
+        });
+
+        if (delta != null && !stopped[0]) {
+            final int offset = base.getPatternCount();
+            delta.search(text, (patternId, start, end) -> handler.onMatch(offset + patternId, start, end));
+        }
+    }
+
+    /**
+     * 从上一段文本结束时的状态继续搜索，返回本段文本结束时的状态
+     * 状态把基础层和增量层的自动机状态各 32 位打包进一个 long，只对当前实例有效；
+     * 每次增删都会产生新实例，调用方应在实例变化时从 {@link #START_STATE} 重新开始。
+     * 跨越段边界的命中起始位置为负数；处理器中止搜索时返回 {@link #START_STATE}
+     */
+    public long resume(long state, CharSequence text, AhoCorasick.MatchHandler handler) {
+        final boolean[] stopped = new boolean[1];
+        int baseState = base.resume((int) state, text, (patternId, start, end) -> {
+            if (Arrays.binarySearch(removedIds, patternId) >= 0) return true;
+            stopped[0] = !handler.onMatch(patternId, start, end);
+            return !stopped[0];
+        });
+        if (stopped[0]) return START_STATE;
+
+        int deltaState = AhoCorasick.START_STATE;
+        if (delta != null) {
+            final int offset = base.getPatternCount();
+            deltaState = delta.resume((int) (state >>> 32), text, (patternId, start, end) -> {
+                stopped[0] = !handler.onMatch(offset + patternId, start, end);
+                return !stopped[0];
+            });
+            if (stopped[0]) return START_STATE;
+        }
+        return pack(baseState, deltaState);
+    }
+
+    /**
+     * 根据统一编号获取原始模式 (带标签添加时返回标签)
+     */
+    public String getPattern(int patternId) {
+        int baseCount = base.getPatternCount();
+        return patternId < baseCount ? base.getPattern(patternId) : delta.getPattern(patternId - baseCount);
+    }
+
+    /**
+     * 获取当前生效的全部模式 (去重后的标签)，用于合并重建
+     */
+    public List<String> getPatterns() {
+        Set<String> patterns = new LinkedHashSet<>();
+        for (int id = 0; id < base.getPatternCount(); id++) {
+            if (Arrays.binarySearch(removedIds, id) < 0) {
+                patterns.add(base.getPattern(id));
+            }
+        }
+        patterns.addAll(addedLabels);
+        return new ArrayList<>(patterns);
+    }
+
+    /**
+     * 获取当前生效的模式数量 (按匹配键计，含变体)
+     */
+    public int getPatternCount() {
+        return base.getPatternCount() - removedIds.length + addedKeys.size();
+    }
+
+    /**
+     * 获取尚未合并进基础自动机的增删数量
+     */
+    public int getPendingEdits() {
+        return addedKeys.size() + removedIds.length;
+    }
+
+    /**
+     * 获取基础自动机 (不含未合并的增删)
+     */
+    public AhoCorasick getBase() {
+        return base;
+    }
+
+    /**
+     * 获取只包含新增模式的增量自动机，没有新增时为 null
+     */
+    public AhoCorasick getDelta() {
+        return delta;
+    }
+
+    public boolean isCaseSensitive() {
+        return base.isCaseSensitive();
+    }
+
+    private AhoCorasick compileDelta(List<String> keys, List<String> labels) {
+        return keys.isEmpty() ? null
+                : new AhoCorasick(keys, labels, base.isCaseSensitive(), base.getNormalizer());
+    }
+
+    private static long pack(int baseState, int deltaState) {
+        return ((long) deltaState << 32) | (baseState & 0xFFFFFFFFL);
+    }
+
+    private static int[] insertAt(int[] ids, int index, int id) {
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        result[index] = id;
+        System.arraycopy(ids, index, result, index + 1, ids.length - index);
+        return result;
+    }
+
+    private static int[] removeAt(int[] ids, int index) {
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,236 @@
+package com.laoda.chatfilter.algorithm;
+
+/**
+ * 正则表达式必需字面量提取器
+ * 保守地分析正则表达式，找出任何匹配都必然包含的一段连续字面量，
+ * 例如 "傻.{0,3}逼" 中的 "傻"。无法确定时返回 null，此时该正则必须对每条消息执行。
+ */
+final class RegexLiteralExtractor {
+
+    private static final String META_CHARS = "\\[](){}.*+?^$|";
+
+    private RegexLiteralExtractor() {
+    }
+
+    /**
+     * 提取最长的必需字面量
+     * @param caseSensitive 为 false 时只接受大小写折叠结果确定的字符
+     * @return 必需字面量，无法提取时返回 null
+     */
+    static String extract(String regex, boolean caseSensitive) {
+        // 顶层交替、内联标志和特殊分组会改变匹配语义，直接放弃
+        if (regex.contains("(?") || hasTopLevelAlternation(regex)) {
+            return null;
+        }
+
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        int length = regex.length();
+
+        while (i < length) {
+            char c = regex.charAt(i);
+            char literal = 0;
+            boolean isLiteral = false;
+            int next;
+
+            if (c == '\\') {
+                if (i + 1 >= length) return null;
+                char escaped = regex.charAt(i + 1);
+                // 只接受转义的标点符号，\d \s \x41 \Q...\E 等一律视为非字面量
+                if (!Character.isLetterOrDigit(escaped)) {
+                    literal = escaped;
+                    isLiteral = true;
+                    next = i + 2;
+                } else {
+                    next = skipEscape(regex, i);
+                }
+            } else if (c == '[') {
+                next = skipCharClass(regex, i);
+            } else if (c == '(') {
+                next = skipGroup(regex, i);
+            } else if (c == '.' || c == '^' || c == '$') {
+                next = i + 1;
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                // 出现在原子位置的量词或不成对的括号，语义不明确
+                return null;
+            } else {
+                literal = c;
+                isLiteral = true;
+                next = i + 1;
+            }
+            if (next < 0) return null;
+
+            if (isLiteral && !caseSensitive && !isCaseStable(literal)) {
+                isLiteral = false;
+            }
+
+            // 检查量词：可选的原子不能计入字面量，任何量词之后字面量都会中断
+            int quantifierEnd = skipQuantifier(regex, next);
+            boolean optional = quantifierEnd > next && isOptionalQuantifier(regex, next);
+            boolean quantified = quantifierEnd > next;
+
+            if (isLiteral && !optional) {
+                run.append(literal);
+            }
+            if (!isLiteral || quantified) {
+                if (run.length() > best.length()) {
+                    best = run.toString();
+                }
+                run.setLength(0);
+            }
+            i = quantifierEnd;
+        }
+
+        if (run.length() > best.length()) {
+            best = run.toString();
+        }
+        return best.isEmpty() ? null : best;
+    }
+
+    /**
+     * 不区分大小写时，只有 ASCII 字符和没有大小写形式的字符 (如汉字) 能与自动机的折叠规则保持一致
+     */
+    private static boolean isCaseStable(char c) {
+        if (c < 128) return true;
+        return Character.toLowerCase(c) == c && Character.toUpperCase(c) == c;
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') inClass = false;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 跳过字母或数字开头的转义序列，返回其后的位置
+     */
+    private static int skipEscape(String regex, int start) {
+        int i = start + 1;
+        char type = regex.charAt(i);
+        int length = regex.length();
+
+        switch (type) {
+            case 'Q': {
+                int end = regex.indexOf("\\E", i);
+                return end < 0 ? length : end + 2;
+            }
+            case 'x':
+                if (i + 1 < length && regex.charAt(i + 1) == '{') {
+                    int close = regex.indexOf('}', i);
+                    return close < 0 ? -1 : close + 1;
+                }
+                return Math.min(length, i + 3);
+            case 'u':
+                return Math.min(length, i + 5);
+            case 'c':
+                return Math.min(length, i + 2);
+            case '0': {
+                int end = i + 1;
+                while (end < length && end <= i + 3 && regex.charAt(end) >= '0' && regex.charAt(end) <= '7') end++;
+                return end;
+            }
+            case 'p':
+            case 'P':
+            case 'N':
+            case 'k':
+                if (i + 1 < length && (regex.charAt(i + 1) == '{' || regex.charAt(i + 1) == '<')) {
+                    char closeChar = regex.charAt(i + 1) == '{' ? '}' : '>';
+                    int close = regex.indexOf(closeChar, i);
+                    return close < 0 ? -1 : close + 1;
+                }
+                return Math.min(length, i + 2);
+            default:
+                return i + 1;
+        }
+    }
+
+    private static int skipCharClass(String regex, int start) {
+        int depth = 0;
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+                // 紧跟在 [ 或 [^ 之后的 ] 是普通字符
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') i++;
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') i++;
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipGroup(String regex, int start) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') inClass = false;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipQuantifier(String regex, int index) {
+        if (index >= regex.length()) return index;
+
+        char c = regex.charAt(index);
+        int end;
+        if (c == '*' || c == '+' || c == '?') {
+            end = index + 1;
+        } else if (c == '{') {
+            int close = regex.indexOf('}', index);
+            if (close < 0) return index;
+            end = close + 1;
+        } else {
+            return index;
+        }
+
+        // 懒惰或占有型后缀
+        if (end < regex.length() && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isOptionalQuantifier(String regex, int index) {
+        char c = regex.charAt(index);
+        if (c == '*' || c == '?') return true;
+        if (c == '{') {
+            int i = index + 1;
+            while (i < regex.length() && regex.charAt(i) == ' ') i++;
+            return i < regex.length() && regex.charAt(i) == '0';
+        }
+        return false;
+    }
+}
@@ -0,0 +1,301 @@
+package com.laoda.chatfilter.algorithm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 预编译的正则表达式匹配器
+ * 所有模式在构造时一次性编译。能提取出必需字面量的模式 (如 "傻.{0,3}逼" 中的 "傻")
+ * 由字面量组成的 Aho-Corasick 自动机预过滤，只有字面量出现在消息中时才执行对应正则；
+ * 其余模式按块合并为一个交替表达式 (p1)|(p2)|...，每条消息每块只需执行一次 find()。
+ *
+ * 含反向引用 (分组编号会错位)、命名分组 (合并后可能重名)、\Q 引用 (未闭合时会吞掉后续模式)
+ * 或注释模式标志 (?x) 的模式不参与合并，单独编译、逐个执行；某块合并后仍编译失败时逐段二分，
+ * 无法合并的模式同样改为单独执行。
+ * 实例不可变，可被多个线程并发使用。
+ */
+public final class RegexMatcher {
+
+    /** 每个合并表达式包含的模式数量上限 */
+    private static final int CHUNK_SIZE = 128;
+    /** 反向引用、\Q 引用、命名分组和含 x 的内联标志 (前面的反斜杠为偶数个时才生效) */
+    private static final Pattern NOT_MERGEABLE = Pattern.compile(
+            "(?<!\\\\)(?:\\\\\\\\)*(?:\\\\(?:[1-9]|k<|Q)|\\(\\?(?:<[a-zA-Z]|[a-zA-Z-]*x[a-zA-Z-]*[:)]))");
+
+    private final boolean caseSensitive;
+    private final List<String> patterns;
+    private final List<String> invalidPatterns;
+    private final AhoCorasick literalFilter;
+    private final int[][] literalPatternIds;
+    private final Pattern[] filtered;
+    private final Chunk[] chunks;
+    private final Pattern[] standalone;
+    private final int[] standaloneIds;
+
+    public RegexMatcher(Collection<String> patterns, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+        int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+        List<String> accepted = new ArrayList<>();
+        List<String> invalid = new ArrayList<>();
+        List<Chunk> chunkList = new ArrayList<>();
+        List<Pattern> standaloneList = new ArrayList<>();
+        List<Integer> standaloneIdList = new ArrayList<>();
+        Map<String, List<Integer>> literals = new LinkedHashMap<>();
+        List<Pattern> compiledList = new ArrayList<>();
+
+        List<Integer> mergeIds = new ArrayList<>();
+
+        for (String pattern : patterns) {
+            if (pattern == null || pattern.isEmpty()) continue;
+
+            Pattern compiled;
+            try {
+                compiled = Pattern.compile(pattern, flags);
+            } catch (PatternSyntaxException e) {
+                invalid.add(pattern);
+                continue;
+            }
+
+            int id = accepted.size();
+            accepted.add(pattern);
+            compiledList.add(compiled);
+
+            String literal = RegexLiteralExtractor.extract(pattern, caseSensitive);
+            if (literal != null) {
+                literals.computeIfAbsent(literal, k -> new ArrayList<>()).add(id);
+                continue;
+            }
+
+            if (NOT_MERGEABLE.matcher(pattern).find()) {
+                standaloneList.add(compiled);
+                standaloneIdList.add(id);
+                continue;
+            }
+            mergeIds.add(id);
+        }
+
+        for (int from = 0; from < mergeIds.size(); from += CHUNK_SIZE) {
+            List<Integer> ids = mergeIds.subList(from, Math.min(from + CHUNK_SIZE, mergeIds.size()));
+            addChunks(ids, accepted, compiledList, flags, chunkList, standaloneList, standaloneIdList);
+        }
+
+        this.patterns = Collections.unmodifiableList(accepted);
+        this.invalidPatterns = Collections.unmodifiableList(invalid);
+        this.literalFilter = new AhoCorasick(literals.keySet(), caseSensitive);
+        this.literalPatternIds = new int[literalFilter.getPatternCount()][];
+        for (Map.Entry<String, List<Integer>> entry : literals.entrySet()) {
+            literalPatternIds[literalFilter.findPatternId(entry.getKey())] = toIntArray(entry.getValue());
+        }
+        this.filtered = compiledList.toArray(new Pattern[0]);
+        this.chunks = chunkList.toArray(new Chunk[0]);
+        this.standalone = standaloneList.toArray(new Pattern[0]);
+        this.standaloneIds = toIntArray(standaloneIdList);
+    }
+
+    /**
+     * 查找第一个命中的模式编号，未命中返回 -1
+     */
+    public int findFirstId(CharSequence text) {
+        if (text == null) return -1;
+
+        // 消息中不含任何字面量时，带字面量的正则一个都不需要执行
+        if (literalFilter.contains(text)) {
+            int id = findFirstFiltered(text);
+            if (id >= 0) return id;
+        }
+
+        for (Chunk chunk : chunks) {
+            Matcher matcher = chunk.pattern.matcher(text);
+            if (matcher.find()) {
+                return chunk.matchedId(matcher);
+            }
+        }
+        for (int i = 0; i < standalone.length; i++) {
+            if (standalone[i].matcher(text).find()) {
+                return standaloneIds[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 只执行字面量在消息中出现过的正则，每个正则最多执行一次
+     */
+    private int findFirstFiltered(CharSequence text) {
+        final BitSet evaluated = new BitSet(patterns.size());
+        final int[] result = {-1};
+        literalFilter.search(text, (literalId, start, end) -> {
+            for (int id : literalPatternIds[literalId]) {
+                if (evaluated.get(id)) continue;
+                evaluated.set(id);
+                if (filtered[id].matcher(text).find()) {
+                    result[0] = id;
+                    return false;
+                }
+            }
+            return true;
+        });
+        return result[0];
+    }
+
+    /**
+     * 报告文本中所有非空的匹配，起止位置 (含) 指向原文，用于替换
+     * 合并的块在同一位置只报告其中第一个匹配的模式
+     */
+    public void search(CharSequence text, AhoCorasick.MatchHandler handler) {
+        if (text == null) return;
+
+        if (literalFilter.contains(text)) {
+            BitSet evaluated = new BitSet(patterns.size());
+            boolean[] stopped = {false};
+            literalFilter.search(text, (literalId, start, end) -> {
+                for (int id : literalPatternIds[literalId]) {
+                    if (evaluated.get(id)) continue;
+                    evaluated.set(id);
+                    Matcher matcher = filtered[id].matcher(text);
+                    while (matcher.find()) {
+                        if (matcher.end() > matcher.start()
+                                && !handler.onMatch(id, matcher.start(), matcher.end() - 1)) {
+                            stopped[0] = true;
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            });
+            if (stopped[0]) return;
+        }
+
+        for (Chunk chunk : chunks) {
+            Matcher matcher = chunk.pattern.matcher(text);
+            while (matcher.find()) {
+                if (matcher.end() > matcher.start()
+                        && !handler.onMatch(chunk.matchedId(matcher), matcher.start(), matcher.end() - 1)) {
+                    return;
+                }
+            }
+        }
+        for (int i = 0; i < standalone.length; i++) {
+            Matcher matcher = standalone[i].matcher(text);
+            while (matcher.find()) {
+                if (matcher.end() > matcher.start()
+                        && !handler.onMatch(standaloneIds[i], matcher.start(), matcher.end() - 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 检查文本是否匹配任何模式，返回第一个命中的模式
+     */
+    public String findFirst(CharSequence text) {
+        int id = findFirstId(text);
+        return id >= 0 ? patterns.get(id) : null;
+    }
+
+    public String getPattern(int patternId) {
+        return patterns.get(patternId);
+    }
+
+    /**
+     * 获取成功编译的全部模式
+     */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * 获取通过字面量预过滤的模式数量
+     */
+    public int getFilteredCount() {
+        int count = 0;
+        for (int[] ids : literalPatternIds) {
+            count += ids.length;
+        }
+        return count;
+    }
+
+    /**
+     * 获取编译失败而被忽略的模式
+     */
+    public List<String> getInvalidPatterns() {
+        return invalidPatterns;
+    }
+
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * 把一组模式合并为一块；合并后编译失败时拆成两半分别合并，单个模式仍失败时改为单独执行
+     */
+    private static void addChunks(List<Integer> ids, List<String> patterns, List<Pattern> compiled, int flags,
+                                  List<Chunk> chunks, List<Pattern> standalone, List<Integer> standaloneIds) {
+        StringBuilder combined = new StringBuilder();
+        List<Integer> groups = new ArrayList<>(ids.size());
+        int nextGroup = 1;
+        for (int id : ids) {
+            if (combined.length() > 0) {
+                combined.append('|');
+            }
+            combined.append('(').append(patterns.get(id)).append(')');
+            groups.add(nextGroup);
+            nextGroup += 1 + compiled.get(id).matcher("").groupCount();
+        }
+
+        try {
+            chunks.add(new Chunk(Pattern.compile(combined.toString(), flags), ids, groups));
+        } catch (PatternSyntaxException e) {
+            if (ids.size() == 1) {
+                standalone.add(compiled.get(ids.get(0)));
+                standaloneIds.add(ids.get(0));
+                return;
+            }
+            int half = ids.size() / 2;
+            addChunks(ids.subList(0, half), patterns, compiled, flags, chunks, standalone, standaloneIds);
+            addChunks(ids.subList(half, ids.size()), patterns, compiled, flags, chunks, standalone, standaloneIds);
+        }
+    }
+
+    private static int[] toIntArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 合并后的一块表达式，记录每个模式外层分组的编号
+     */
+    private static final class Chunk {
+        final Pattern pattern;
+        final int[] ids;
+        final int[] groups;
+
+        Chunk(Pattern pattern, List<Integer> ids, List<Integer> groups) {
+            this.pattern = pattern;
+            this.ids = toIntArray(ids);
+            this.groups = toIntArray(groups);
+        }
+
+        int matchedId(Matcher matcher) {
+            for (int i = 0; i < groups.length; i++) {
+                if (matcher.start(groups[i]) >= 0) {
+                    return ids[i];
+                }
+            }
+            return ids[0];
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.laoda.chatfilter.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * 命中区间收集器
+ * 作为 {@link AhoCorasick.MatchHandler} 收集一条消息中的全部命中，
+ * 按 "最左最长、互不重叠" 的规则筛选后，在复用的字符缓冲区中把命中区间替换为掩码字符。
+ *
+ * 实例不是线程安全的，应每个线程持有一个并在每条消息前调用 {@link #reset()}。
+ */
+public final class SpanCollector implements AhoCorasick.MatchHandler {
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] ids = new int[16];
+    private int count;
+    private char[] buffer = new char[256];
+
+    /**
+     * 清空上一条消息的命中
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public boolean onMatch(int patternId, int start, int end) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        ids[count] = patternId;
+        count++;
+        return true;
+    }
+
+    /**
+     * 按最左最长规则保留互不重叠的命中，返回保留的数量
+     * 起点相同的命中取最长的一个，与已保留区间重叠的命中被丢弃
+     */
+    public int selectLeftmostLongest() {
+        // 命中数量通常很少，按 (起点升序, 终点降序) 插入排序
+        for (int i = 1; i < count; i++) {
+            int start = starts[i];
+            int end = ends[i];
+            int id = ids[i];
+            int j = i - 1;
+            while (j >= 0 && (starts[j] > start || (starts[j] == start && ends[j] < end))) {
+                starts[j + 1] = starts[j];
+                ends[j + 1] = ends[j];
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            starts[j + 1] = start;
+            ends[j + 1] = end;
+            ids[j + 1] = id;
+        }
+
+        int kept = 0;
+        int lastEnd = -1;
+        for (int i = 0; i < count; i++) {
+            if (starts[i] <= lastEnd) continue;
+            starts[kept] = starts[i];
+            ends[kept] = ends[i];
+            ids[kept] = ids[i];
+            lastEnd = ends[i];
+            kept++;
+        }
+        count = kept;
+        return kept;
+    }
+
+    /**
+     * 在复用的缓冲区中把保留的命中区间替换为掩码字符，只在最后生成一次字符串
+     */
+    public String mask(CharSequence text, char maskChar) {
+        int length = text.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[i] = text.charAt(i);
+        }
+        for (int i = 0; i < count; i++) {
+            Arrays.fill(buffer, starts[i], ends[i] + 1, maskChar);
+        }
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * 命中数量
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 第 index 个命中的模式编号
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * 第 index 个命中的起始位置 (含)
+     */
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * 第 index 个命中的结束位置 (含)
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+}
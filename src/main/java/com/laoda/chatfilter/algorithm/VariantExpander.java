@@ -0,0 +1,216 @@
+package com.laoda.chatfilter.algorithm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 敏感词变体生成器
+ * 根据内置拼音表 (pinyin.txt) 为含汉字的敏感词生成全拼 ("shabi")、首字母 ("sb")
+ * 和同音字 ("煞笔") 变体。变体在构建词库时一次性生成并编译进同一个自动机，
+ * 命中任意变体时报告原始敏感词，检测仍然只需单次线性扫描。
+ *
+ * 实例不可变，拼音表在首次使用时加载一次。
+ */
+public final class VariantExpander {
+
+    /** 不生成任何变体 */
+    public static final VariantExpander NONE = new VariantExpander(false, false, false, 0, 1);
+
+    private static final String TABLE_RESOURCE = "/pinyin.txt";
+
+    private final boolean pinyin;
+    private final boolean initials;
+    private final boolean homophones;
+    private final int homophonesPerChar;
+    private final int maxVariants;
+
+    /**
+     * @param homophonesPerChar 每个汉字最多替换为几个同音字
+     * @param maxVariants 每个敏感词最多生成的匹配键数量 (含原词)
+     */
+    public VariantExpander(boolean pinyin, boolean initials, boolean homophones,
+                           int homophonesPerChar, int maxVariants) {
+        this.pinyin = pinyin;
+        this.initials = initials;
+        this.homophones = homophones;
+        this.homophonesPerChar = Math.max(0, homophonesPerChar);
+        this.maxVariants = Math.max(1, maxVariants);
+    }
+
+    /**
+     * 生成敏感词的全部匹配键，第一个总是原词
+     */
+    public List<String> expand(String word) {
+        if (!isEnabled() || word == null || word.isEmpty()) {
+            return Collections.singletonList(word);
+        }
+
+        Set<String> variants = new LinkedHashSet<>();
+        variants.add(word);
+
+        int hanCount = 0;
+        boolean romanizable = true;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (isHan(c)) {
+                hanCount++;
+                romanizable &= PinyinTable.INSTANCE.readings.containsKey(c);
+            }
+        }
+        if (hanCount == 0) {
+            return Collections.singletonList(word);
+        }
+
+        // 单个汉字的拼音和首字母太短，容易误判，只对两个字以上的词生成
+        if ((pinyin || initials) && hanCount >= 2 && romanizable) {
+            List<String[]> readings = new ArrayList<>();
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                readings.add(isHan(c) ? PinyinTable.INSTANCE.readings.get(c) : new String[]{String.valueOf(c)});
+            }
+            if (pinyin) {
+                combine(readings, 0, new StringBuilder(), false, variants);
+            }
+            if (initials) {
+                combine(readings, 0, new StringBuilder(), true, variants);
+            }
+        }
+
+        if (homophones && homophonesPerChar > 0) {
+            List<String[]> alternatives = new ArrayList<>();
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                alternatives.add(homophonesOf(c));
+            }
+            combine(alternatives, 0, new StringBuilder(), false, variants);
+        }
+
+        return new ArrayList<>(variants);
+    }
+
+    /**
+     * 是否会生成任何变体
+     */
+    public boolean isEnabled() {
+        return (pinyin || initials || homophones) && maxVariants > 1;
+    }
+
+    /**
+     * 变体规则 (开关、数量限制和拼音表内容) 的指纹，未启用时为 0
+     */
+    public long fingerprint() {
+        if (!isEnabled()) return 0;
+
+        long hash = PinyinTable.INSTANCE.checksum;
+        hash = hash * 31 + (pinyin ? 1 : 0);
+        hash = hash * 31 + (initials ? 1 : 0);
+        hash = hash * 31 + (homophones ? 1 : 0);
+        hash = hash * 31 + homophonesPerChar;
+        return hash * 31 + maxVariants;
+    }
+
+    /**
+     * 按位置做笛卡尔积，达到数量上限后停止
+     * @param firstLetter 只取每个读音的首字母
+     */
+    private void combine(List<String[]> options, int index, StringBuilder current,
+                         boolean firstLetter, Set<String> variants) {
+        if (variants.size() >= maxVariants) return;
+        if (index == options.size()) {
+            variants.add(current.toString());
+            return;
+        }
+
+        int length = current.length();
+        for (String option : options.get(index)) {
+            current.append(firstLetter ? option.substring(0, 1) : option);
+            combine(options, index + 1, current, firstLetter, variants);
+            current.setLength(length);
+            if (variants.size() >= maxVariants) return;
+        }
+    }
+
+    /**
+     * 字符本身加上按拼音表顺序排列的前几个同音字
+     */
+    private String[] homophonesOf(char c) {
+        String[] readings = isHan(c) ? PinyinTable.INSTANCE.readings.get(c) : null;
+        if (readings == null) {
+            return new String[]{String.valueOf(c)};
+        }
+
+        String group = PinyinTable.INSTANCE.groups.get(readings[0]);
+        List<String> result = new ArrayList<>(homophonesPerChar + 1);
+        result.add(String.valueOf(c));
+        for (int i = 0; i < group.length() && result.size() <= homophonesPerChar; i++) {
+            if (group.charAt(i) != c) {
+                result.add(String.valueOf(group.charAt(i)));
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    /**
+     * 内置拼音表，按需加载 (未启用变体时不占用内存)
+     */
+    private static final class PinyinTable {
+        static final PinyinTable INSTANCE = load();
+
+        /** 汉字 -> 读音，第一个为主读音 */
+        final Map<Character, String[]> readings = new HashMap<>();
+        /** 读音 -> 同音字 */
+        final Map<String, String> groups = new HashMap<>();
+        /** 表内容的校验和 */
+        long checksum = 17;
+
+        private static PinyinTable load() {
+            PinyinTable table = new PinyinTable();
+            InputStream in = VariantExpander.class.getResourceAsStream(TABLE_RESOURCE);
+            if (in == null) {
+                throw new IllegalStateException("找不到拼音表: " + TABLE_RESOURCE);
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+
+                    int space = line.indexOf(' ');
+                    if (space <= 0) continue;
+                    String syllable = line.substring(0, space);
+                    String chars = line.substring(space + 1).trim();
+                    table.groups.put(syllable, chars);
+                    table.checksum = table.checksum * 31 + line.hashCode();
+                    for (int i = 0; i < chars.length(); i++) {
+                        table.readings.merge(chars.charAt(i), new String[]{syllable}, VariantExpander::append);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("读取拼音表失败", e);
+            }
+            return table;
+        }
+    }
+
+    private static String[] append(String[] existing, String[] added) {
+        String[] result = new String[existing.length + added.length];
+        System.arraycopy(existing, 0, result, 0, existing.length);
+        System.arraycopy(added, 0, result, existing.length, added.length);
+        return result;
+    }
+}
@@ -0,0 +1,582 @@
+package com.laoda.chatfilter.cli;
+
+import com.laoda.chatfilter.algorithm.LayeredMatcher;
+import com.laoda.chatfilter.config.YamlSettingsSection;
+import com.laoda.chatfilter.detection.DetectionSettings;
+import com.laoda.chatfilter.detection.DetectionSnapshot;
+import com.laoda.chatfilter.detection.SeverityPolicy;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 离线语料扫描工具
+ * 用 words.yml 和 config.yml 构建与插件相同的检测快照 (相同的匹配器、规范化和变体)，
+ * 扫描导出的聊天日志，统计每个敏感词的命中行数并列出示例行，用于调整词库。不需要 Bukkit：
+ *
+ *   java -jar ChatFilter.jar words.yml config.yml 日志文件... [--samples N] [--top N] [--threads N]
+ *
+ * 日志按 UTF-8 逐行检测 (无效字节替换为 U+FFFD)。文件通过 FileChannel.map 按块映射，
+ * 块边界对齐到换行符，各块在独立的 ForkJoinPool 中并行扫描，文件内容不会读入堆内存。
+ * 每行统计其中出现的全部敏感词 (同一行多次出现只计一次)；正则模式和模糊匹配与插件一样只报告第一个命中
+ */
+public final class CorpusScanner {
+
+    /** 每个扫描块的目标大小，实际大小延伸到下一个换行符 */
+    private static final long CHUNK_SIZE = 64L << 20;
+    /** 查找块边界时每次读取的字节数 */
+    private static final int BOUNDARY_PROBE = 8192;
+    /** 解码时每次从映射区域复制的字节数 */
+    private static final int WINDOW_SIZE = 64 * 1024;
+    /** 示例行超过该长度时截断 */
+    private static final int SAMPLE_LENGTH = 200;
+    private static final int DEFAULT_SAMPLES = 3;
+
+    private static final String USAGE =
+            "用法: java -jar ChatFilter.jar <words.yml> <config.yml> <日志文件...> [--samples N] [--top N] [--threads N]\n"
+            + "  --samples N  每个敏感词列出的示例行数 (默认 " + DEFAULT_SAMPLES + ")\n"
+            + "  --top N      只列出命中最多的 N 个敏感词 (默认全部)\n"
+            + "  --threads N  并行扫描的线程数 (默认为处理器核数)";
+
+    private final DetectionSnapshot snapshot;
+    private final int samples;
+
+    /**
+     * @param samples 每个敏感词保留的示例行数
+     */
+    public CorpusScanner(DetectionSnapshot snapshot, int samples) {
+        this.snapshot = snapshot;
+        this.samples = samples;
+    }
+
+    public static void main(String[] args) {
+        PrintStream out = utf8(FileDescriptor.out);
+        PrintStream err = utf8(FileDescriptor.err);
+
+        List<String> positional = new ArrayList<>();
+        int samples = DEFAULT_SAMPLES;
+        int top = Integer.MAX_VALUE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--samples":
+                        samples = parseOption(args, ++i, 0);
+                        break;
+                    case "--top":
+                        top = parseOption(args, ++i, 1);
+                        break;
+                    case "--threads":
+                        threads = parseOption(args, ++i, 1);
+                        break;
+                    default:
+                        positional.add(args[i]);
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            System.exit(2);
+        }
+        if (positional.size() < 3) {
+            err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            DetectionSnapshot snapshot = loadSnapshot(Paths.get(positional.get(0)), Paths.get(positional.get(1)), err);
+            err.println("已加载 " + snapshot.getWordCount() + " 个敏感词");
+
+            List<Path> files = new ArrayList<>();
+            for (String file : positional.subList(2, positional.size())) {
+                files.add(Paths.get(file));
+            }
+            Report report = new CorpusScanner(snapshot, samples).scan(files, threads);
+            report.print(out, top);
+        } catch (IOException | UncheckedIOException e) {
+            err.println("扫描失败: " + e);
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            err.println("配置文件格式错误: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 按插件的加载方式从 words.yml 和 config.yml 构建检测快照 (不启用结论缓存)
+     * @param log 输出警告信息
+     */
+    public static DetectionSnapshot loadSnapshot(Path wordsFile, Path configFile, PrintStream log)
+            throws IOException {
+        YamlSettingsSection words = YamlSettingsSection.load(wordsFile);
+        YamlSettingsSection config = YamlSettingsSection.load(configFile);
+
+        DetectionSettings settings = DetectionSettings.load(config.getSection("detection-settings"))
+                .withSeverityPolicy(SeverityPolicy.load(config.getSection("filter-mode"), words))
+                .withVerdictCacheSize(0);
+        Set<String> sensitiveWords = new LinkedHashSet<>();
+        for (String word : words.getStringList("sensitive-words")) {
+            if (!word.trim().isEmpty()) {
+                sensitiveWords.add(word.trim());
+            }
+        }
+
+        // 与插件一致：存在无效的正则表达式时回退到字符串匹配
+        if (settings.isUseRegex()) {
+            for (String word : sensitiveWords) {
+                try {
+                    Pattern.compile(word);
+                } catch (PatternSyntaxException e) {
+                    log.println("检测到无效的正则表达式，将禁用正则模式: " + word);
+                    settings = settings.withUseRegex(false);
+                    break;
+                }
+            }
+        }
+        return new DetectionSnapshot(sensitiveWords, settings);
+    }
+
+    /**
+     * 并行扫描日志文件
+     * @param threads 并行扫描的线程数
+     */
+    public Report scan(List<Path> files, int threads) throws IOException {
+        long startTime = System.nanoTime();
+        List<FileChannel> channels = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Chunk> chunks = new ArrayList<>();
+            long bytes = 0;
+            for (Path file : files) {
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                channels.add(channel);
+                bytes += channel.size();
+                split(channel, chunks);
+            }
+
+            // 结果按块的顺序合并，示例行总是取文件中最靠前的几行，与线程数无关
+            List<ChunkResult> results = pool.submit(() -> IntStream.range(0, chunks.size()).parallel()
+                    .mapToObj(i -> scanChunk(chunks.get(i)))
+                    .collect(Collectors.toList())).get();
+
+            Report report = new Report(files.size(), bytes, samples);
+            for (ChunkResult result : results) {
+                report.merge(result);
+            }
+            report.elapsedNanos = System.nanoTime() - startTime;
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("扫描被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } finally {
+            pool.shutdown();
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 把文件划分为约 {@link #CHUNK_SIZE} 字节的块，每块在换行符之后结束
+     */
+    private static void split(FileChannel channel, List<Chunk> chunks) throws IOException {
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + CHUNK_SIZE, size);
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("单行超过 2 GB，无法扫描");
+            }
+            chunks.add(new Chunk(channel, start, (int) (end - start)));
+            start = end;
+        }
+    }
+
+    private ChunkResult scanChunk(Chunk chunk) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = chunk.channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // 映射区域分批整块复制到小窗口中解码，比逐字节读取映射缓冲区快得多
+        ChunkResult result = new ChunkResult();
+        LineView line = new LineView();
+        byte[] window = new byte[WINDOW_SIZE];
+        int pos = 0;
+        int limit = 0;
+        while (true) {
+            // 上一批末尾不完整的多字节序列 (最多 3 字节) 移到窗口开头
+            int tail = limit - pos;
+            System.arraycopy(window, pos, window, 0, tail);
+            int read = Math.min(window.length - tail, buffer.remaining());
+            buffer.get(window, tail, read);
+            limit = tail + read;
+            if (limit == 0) break;
+
+            boolean last = !buffer.hasRemaining();
+            pos = decode(window, 0, last ? limit : limit - 3, limit, line, result);
+            if (last) break;
+        }
+        if (line.length > 0) {
+            inspectLine(line, result);
+        }
+        return result;
+    }
+
+    /**
+     * 解码起点在 end 之前的字符 (多字节序列可延伸到 limit)，每遇到换行检测一行，返回停止的位置
+     * 不合法的字节输出 U+FFFD 并只跳过一个字节
+     */
+    private int decode(byte[] bytes, int pos, int end, int limit, LineView line, ChunkResult result) {
+        while (pos < end) {
+            int b = bytes[pos];
+            if (b >= 0) {
+                // ASCII
+                pos++;
+                if (b == '\n') {
+                    inspectLine(line, result);
+                    line.length = 0;
+                } else {
+                    line.append((char) b);
+                }
+                continue;
+            }
+
+            // 多字节序列：先确定长度和合法的第二字节范围
+            b &= 0xFF;
+            int count;
+            int codePoint;
+            int lower = 0x80;
+            int upper = 0xBF;
+            if (b >= 0xC2 && b <= 0xDF) {
+                count = 1;
+                codePoint = b & 0x1F;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                count = 2;
+                codePoint = b & 0x0F;
+                if (b == 0xE0) lower = 0xA0;
+                if (b == 0xED) upper = 0x9F;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                count = 3;
+                codePoint = b & 0x07;
+                if (b == 0xF0) lower = 0x90;
+                if (b == 0xF4) upper = 0x8F;
+            } else {
+                line.append('\uFFFD');
+                pos++;
+                continue;
+            }
+
+            int next = pos + 1;
+            for (int k = 0; k < count; k++, next++) {
+                int c = next < limit ? bytes[next] & 0xFF : -1;
+                if (c < (k == 0 ? lower : 0x80) || c > (k == 0 ? upper : 0xBF)) {
+                    codePoint = -1;
+                    break;
+                }
+                codePoint = codePoint << 6 | (c & 0x3F);
+            }
+            if (codePoint < 0) {
+                line.append('\uFFFD');
+                pos++;
+            } else {
+                line.appendCodePoint(codePoint);
+                pos = next;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * 检测一行，记录其中出现的全部敏感词
+     */
+    private void inspectLine(LineView line, ChunkResult result) {
+        if (line.length > 0 && line.chars[line.length - 1] == '\r') {
+            line.length--;
+        }
+        result.lines++;
+
+        List<String> found = result.found;
+        found.clear();
+        if (!snapshot.isUseRegex()) {
+            LayeredMatcher matcher = snapshot.getWordMatcher();
+            if (matcher.mayMatch(line)) {
+                matcher.search(line, (patternId, start, end) -> {
+                    // 命中变体时报告原词，同一行中的重复命中只计一次
+                    String word = matcher.getPattern(patternId);
+                    if (!found.contains(word)) {
+                        found.add(word);
+                    }
+                    return true;
+                });
+            }
+        }
+        if (found.isEmpty() && (snapshot.isUseRegex() || snapshot.getFuzzyMatcher() != null)) {
+            String word = snapshot.detect(line);
+            if (word != null) {
+                found.add(word);
+            }
+        }
+        if (found.isEmpty()) {
+            return;
+        }
+
+        result.matchedLines++;
+        String sample = null;
+        for (String word : found) {
+            WordStats stats = result.words.get(word);
+            if (stats == null) {
+                stats = new WordStats();
+                result.words.put(word, stats);
+            }
+            stats.lines++;
+            if (stats.samples.size() < samples) {
+                if (sample == null) {
+                    sample = line.length > SAMPLE_LENGTH
+                            ? new String(line.chars, 0, SAMPLE_LENGTH) + "..."
+                            : line.toString();
+                }
+                stats.samples.add(sample);
+            }
+        }
+    }
+
+    private static int parseOption(String[] args, int index, int min) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("缺少参数: " + args[index - 1]);
+        }
+        try {
+            int value = Integer.parseInt(args[index]);
+            if (value >= min) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // 下方统一报告
+        }
+        throw new IllegalArgumentException("无效的参数: " + args[index - 1] + " " + args[index]);
+    }
+
+    private static PrintStream utf8(FileDescriptor descriptor) {
+        try {
+            return new PrintStream(new FileOutputStream(descriptor), true, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 扫描结果：各敏感词的命中行数和示例行
+     */
+    public static final class Report {
+        private final int fileCount;
+        private final long bytes;
+        private final int samples;
+        private final Map<String, WordStats> words = new HashMap<>();
+        private long lines;
+        private long matchedLines;
+        private long elapsedNanos;
+
+        Report(int fileCount, long bytes, int samples) {
+            this.fileCount = fileCount;
+            this.bytes = bytes;
+            this.samples = samples;
+        }
+
+        void merge(ChunkResult result) {
+            lines += result.lines;
+            matchedLines += result.matchedLines;
+            for (Map.Entry<String, WordStats> entry : result.words.entrySet()) {
+                WordStats stats = words.get(entry.getKey());
+                if (stats == null) {
+                    stats = new WordStats();
+                    words.put(entry.getKey(), stats);
+                }
+                stats.lines += entry.getValue().lines;
+                for (String sample : entry.getValue().samples) {
+                    if (stats.samples.size() >= samples) break;
+                    stats.samples.add(sample);
+                }
+            }
+        }
+
+        /**
+         * 命中该敏感词的行数
+         */
+        public long getLineCount(String word) {
+            WordStats stats = words.get(word);
+            return stats != null ? stats.lines : 0;
+        }
+
+        /**
+         * 该敏感词的示例行 (按在文件中出现的顺序)
+         */
+        public List<String> getSamples(String word) {
+            WordStats stats = words.get(word);
+            return stats != null ? stats.samples : new ArrayList<String>();
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getMatchedLines() {
+            return matchedLines;
+        }
+
+        /**
+         * 按命中行数从多到少输出
+         * @param top 最多列出的敏感词数量
+         */
+        public void print(PrintStream out, int top) {
+            double seconds = elapsedNanos / 1e9;
+            double megabytes = bytes / (1024.0 * 1024.0);
+            out.println(String.format("扫描完成: %d 个文件, %d 行, %.1f MB, 耗时 %.2f 秒 (%.1f MB/秒)",
+                    fileCount, lines, megabytes, seconds, seconds > 0 ? megabytes / seconds : 0));
+            out.println(String.format("命中行数: %d (%.4f%%), 命中的敏感词: %d 个",
+                    matchedLines, lines > 0 ? matchedLines * 100.0 / lines : 0, words.size()));
+
+            List<Map.Entry<String, WordStats>> entries = new ArrayList<>(words.entrySet());
+            entries.sort((a, b) -> a.getValue().lines != b.getValue().lines
+                    ? Long.compare(b.getValue().lines, a.getValue().lines)
+                    : a.getKey().compareTo(b.getKey()));
+            for (Map.Entry<String, WordStats> entry : entries.subList(0, Math.min(top, entries.size()))) {
+                out.println();
+                out.println(entry.getKey() + "  " + entry.getValue().lines);
+                for (String sample : entry.getValue().samples) {
+                    out.println("    > " + sample);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个敏感词的命中行数和示例行
+     */
+    private static final class WordStats {
+        long lines;
+        final List<String> samples = new ArrayList<>();
+    }
+
+    /**
+     * 单个块的扫描结果
+     */
+    private static final class ChunkResult {
+        long lines;
+        long matchedLines;
+        final Map<String, WordStats> words = new HashMap<>();
+        /** 当前行命中的敏感词，逐行复用 */
+        final List<String> found = new ArrayList<>();
+    }
+
+    /**
+     * 文件中的一个扫描块
+     */
+    private static final class Chunk {
+        final FileChannel channel;
+        final long start;
+        final int length;
+
+        Chunk(FileChannel channel, long start, int length) {
+            this.channel = channel;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 逐行复用的解码缓冲区，直接作为 CharSequence 交给匹配器，不为每行创建字符串
+     */
+    private static final class LineView implements CharSequence {
+        char[] chars = new char[256];
+        int length;
+
+        void append(char c) {
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, length * 2);
+            }
+            chars[length++] = c;
+        }
+
+        void appendCodePoint(int codePoint) {
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                append((char) codePoint);
+            } else {
+                append(Character.highSurrogate(codePoint));
+                append(Character.lowSurrogate(codePoint));
+            }
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
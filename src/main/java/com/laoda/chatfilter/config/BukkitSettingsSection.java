@@ -0,0 +1,65 @@
+package com.laoda.chatfilter.config;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 以 Bukkit 配置段实现的 {@link SettingsSection}
+ */
+public final class BukkitSettingsSection implements SettingsSection {
+
+    private final ConfigurationSection section;
+
+    private BukkitSettingsSection(ConfigurationSection section) {
+        this.section = section;
+    }
+
+    /**
+     * 包装 Bukkit 配置段，section 为 null 时返回 null
+     */
+    public static SettingsSection wrap(ConfigurationSection section) {
+        return section != null ? new BukkitSettingsSection(section) : null;
+    }
+
+    @Override
+    public Set<String> getKeys() {
+        return section.getKeys(false);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def) {
+        return section.getBoolean(key, def);
+    }
+
+    @Override
+    public int getInt(String key, int def) {
+        return section.getInt(key, def);
+    }
+
+    @Override
+    public boolean isInt(String key) {
+        return section.isInt(key);
+    }
+
+    @Override
+    public double getDouble(String key, double def) {
+        return section.getDouble(key, def);
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        return section.getString(key, def);
+    }
+
+    @Override
+    public List<String> getStringList(String key) {
+        return section.getStringList(key);
+    }
+
+    @Override
+    public SettingsSection getSection(String key) {
+        return wrap(section.getConfigurationSection(key));
+    }
+}
@@ -1,5 +1,6 @@
 package com.laoda.chatfilter.config;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,9 +30,21 @@ public class ConfigValidator {
         // 验证检测设置
         validateDetectionSettings(config);
         
+        // 验证聊天限流
+        validateRateLimit(config);
+        
+        // 验证刷屏检测
+        validateFloodDetection(config);
+        
+        // 验证影子模式
+        validateShadowMode(config);
+        
         // 验证处罚阶梯
         validatePunishmentStages(config);
         
+        // 验证处罚命令执行
+        validatePunishmentDispatch(config);
+        
         // 验证日志设置
         validateLogSettings(config);
         
@@ -59,6 +72,39 @@ public class ConfigValidator {
             }
         }
         
+        ConfigurationSection severities = config.getConfigurationSection("word-severity");
+        if (severities != null) {
+            for (String word : severities.getKeys(false)) {
+                if (!severities.isInt(word) || severities.getInt(word) < 0) {
+                    warnings.add("敏感词 " + word + " 的等级无效 (需为非负整数)，将使用默认等级");
+                } else if (words != null && !words.contains(word)) {
+                    warnings.add("设置了等级的词 " + word + " 不在敏感词列表中");
+                }
+            }
+        }
+        
+        ConfigurationSection weights = config.getConfigurationSection("word-weight");
+        if (weights != null) {
+            for (String word : weights.getKeys(false)) {
+                if (!weights.isInt(word) || weights.getInt(word) < 0) {
+                    warnings.add("敏感词 " + word + " 的处罚权重无效 (需为非负整数)，将使用权重 1");
+                } else if (words != null && !words.contains(word)) {
+                    warnings.add("设置了处罚权重的词 " + word + " 不在敏感词列表中");
+                }
+            }
+        }
+        
+        ConfigurationSection categories = config.getConfigurationSection("word-category");
+        if (categories != null) {
+            for (String word : categories.getKeys(false)) {
+                if (categories.getString(word, "").trim().isEmpty()) {
+                    warnings.add("敏感词 " + word + " 的分类为空，将使用 default");
+                } else if (words != null && !words.contains(word)) {
+                    warnings.add("设置了分类的词 " + word + " 不在敏感词列表中");
+                }
+            }
+        }
+        
         return new ValidationResult(new ArrayList<>(errors), new ArrayList<>(warnings));
     }
     
@@ -132,6 +178,121 @@ public class ConfigValidator {
         if (!config.contains(basePath + ".case-sensitive")) {
             warnings.add("缺少大小写敏感设置，将使用默认值 false");
         }
+        
+        // 验证自定义字符映射
+        ConfigurationSection mappings = config.getConfigurationSection(basePath + ".normalization.custom-mappings");
+        if (mappings != null) {
+            for (String from : mappings.getKeys(false)) {
+                String to = mappings.getString(from, "");
+                if (from.length() != 1 || to.length() > 1) {
+                    warnings.add("无效的字符映射 (只支持单字符映射): " + from + " -> " + to + "，将被忽略");
+                }
+            }
+        }
+        
+        // 验证模糊匹配规则
+        ConfigurationSection fuzzyRules = config.getConfigurationSection(basePath + ".fuzzy-matching.max-distance");
+        if (fuzzyRules != null) {
+            for (String length : fuzzyRules.getKeys(false)) {
+                try {
+                    if (Integer.parseInt(length) <= 0 || fuzzyRules.getInt(length, -1) < 0) {
+                        warnings.add("无效的模糊匹配规则: " + length + " -> " + fuzzyRules.get(length) + "，将被忽略");
+                    } else if (fuzzyRules.getInt(length) > 3) {
+                        warnings.add("模糊匹配编辑距离 " + fuzzyRules.getInt(length) + " 过大，可能导致大量误判");
+                    }
+                } catch (NumberFormatException e) {
+                    warnings.add("无效的模糊匹配词长: " + length + "，将被忽略");
+                }
+            }
+        }
+        
+        // 验证跨消息检测时间窗口
+        if (config.getBoolean(basePath + ".cross-message.enabled", false)
+                && config.getInt(basePath + ".cross-message.window-seconds", 5) <= 0) {
+            warnings.add("跨消息检测的 window-seconds 必须为正数，将使用默认值 5");
+        }
+        
+        // 验证自动机存储方式
+        String storage = config.getString(basePath + ".storage", "heap");
+        if (!isValidStorage(storage)) {
+            warnings.add("无效的自动机存储方式: " + storage + "，有效值: heap, direct, mapped，将使用 heap");
+        } else if ("mapped".equalsIgnoreCase(storage.trim()) && !config.getBoolean(basePath + ".automaton-cache", true)) {
+            warnings.add("mapped 存储方式需要启用 automaton-cache，未启用时按 direct 处理");
+        }
+        
+        // 验证结论缓存容量
+        if (config.getInt(basePath + ".verdict-cache-size", 4096) < 0) {
+            warnings.add("verdict-cache-size 不能为负数，将不缓存检测结论");
+        }
+    }
+    
+    private void validateRateLimit(FileConfiguration config) {
+        String basePath = "rate-limit";
+        if (!config.getBoolean(basePath + ".enabled", false)) {
+            return;
+        }
+        
+        if (config.getDouble(basePath + ".messages-per-second", 2.0) <= 0) {
+            warnings.add("限流的 messages-per-second 必须为正数，将使用默认值 2");
+        }
+        if (config.getInt(basePath + ".burst", 5) < 1) {
+            warnings.add("限流的 burst 至少为 1，将使用默认值 5");
+        }
+    }
+    
+    private void validatePunishmentDispatch(FileConfiguration config) {
+        double budget = config.getDouble("punishment-dispatch.tick-budget-ms", 5.0);
+        if (budget <= 0 || budget > 50) {
+            warnings.add("处罚命令的 tick-budget-ms 应在 0-50 之间 (不含 0)，将使用默认值 5");
+        } else if (budget > 20) {
+            warnings.add("处罚命令的 tick-budget-ms " + budget + " 过大，大量违规时仍可能影响 TPS");
+        }
+    }
+    
+    private void validateShadowMode(FileConfiguration config) {
+        String basePath = "shadow-mode";
+        if (!config.getBoolean(basePath + ".enabled", false)) {
+            return;
+        }
+        
+        String wordsFile = config.getString(basePath + ".words-file", "words-candidate.yml");
+        if (wordsFile == null || wordsFile.trim().isEmpty()) {
+            errors.add("影子模式的 words-file 不能为空");
+        }
+        double sampleRate = config.getDouble(basePath + ".sample-rate", 1.0);
+        if (sampleRate <= 0 || sampleRate > 1) {
+            warnings.add("影子模式的 sample-rate 应在 0-1 之间 (不含 0)，将使用默认值 1");
+        }
+        if (config.getInt(basePath + ".queue-size", 1024) < 1) {
+            warnings.add("影子模式的 queue-size 至少为 1，将使用默认值 1024");
+        }
+    }
+    
+    private void validateFloodDetection(FileConfiguration config) {
+        String basePath = "flood-detection";
+        if (!config.getBoolean(basePath + ".enabled", false)) {
+            return;
+        }
+        
+        int historySize = config.getInt(basePath + ".history-size", 8);
+        if (historySize < 1 || historySize > 64) {
+            warnings.add("刷屏检测的 history-size 应在 1-64 之间，将使用默认值 8");
+        }
+        int maxDistance = config.getInt(basePath + ".max-distance", 8);
+        if (maxDistance < 0 || maxDistance > 64) {
+            warnings.add("刷屏检测的 max-distance 应在 0-64 之间，将使用默认值 8");
+        } else if (maxDistance > 16) {
+            warnings.add("刷屏检测的 max-distance " + maxDistance + " 过大，不相关的消息也可能被判定为刷屏");
+        }
+        if (config.getInt(basePath + ".window-seconds", 30) <= 0) {
+            warnings.add("刷屏检测的 window-seconds 必须为正数，将使用默认值 30");
+        }
+        if (config.getInt(basePath + ".max-repeats", 2) < 0) {
+            warnings.add("刷屏检测的 max-repeats 不能为负数，将使用默认值 2");
+        }
+        if (config.getInt(basePath + ".weight", 1) <= 0) {
+            warnings.add("刷屏检测的 weight 必须为正数，将使用默认值 1");
+        }
     }
     
     private void validatePunishmentStages(FileConfiguration config) {
@@ -213,6 +374,12 @@ public class ConfigValidator {
                 level.equalsIgnoreCase("FINE"));
     }
     
+    private boolean isValidStorage(String storage) {
+        if (storage == null) return false;
+        String value = storage.trim();
+        return value.equalsIgnoreCase("heap") || value.equalsIgnoreCase("direct") || value.equalsIgnoreCase("mapped");
+    }
+    
     /**
      * 验证结果类
      */
@@ -0,0 +1,41 @@
+package com.laoda.chatfilter.config;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 只读的配置段
+ * 检测设置和等级策略的加载只依赖该接口：插件内由 {@link BukkitSettingsSection} 包装 Bukkit 配置，
+ * 离线工具由 {@link YamlSettingsSection} 直接读取 YAML 文件，不需要 Bukkit。
+ * 取值语义与 Bukkit 的 ConfigurationSection 一致：类型不符时返回默认值
+ */
+public interface SettingsSection {
+
+    /**
+     * 本段的直接子键 (不含嵌套子段中的键)，按配置文件中的顺序
+     */
+    Set<String> getKeys();
+
+    boolean getBoolean(String key, boolean def);
+
+    int getInt(String key, int def);
+
+    /**
+     * 值是否为整数 (带引号的数字是字符串)
+     */
+    boolean isInt(String key);
+
+    double getDouble(String key, double def);
+
+    String getString(String key, String def);
+
+    /**
+     * 字符串列表，不存在或不是列表时返回空列表
+     */
+    List<String> getStringList(String key);
+
+    /**
+     * 子配置段，不存在或不是配置段时返回 null
+     */
+    SettingsSection getSection(String key);
+}
@@ -0,0 +1,113 @@
+package com.laoda.chatfilter.config;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 直接读取 YAML 文件的 {@link SettingsSection}，供不依赖 Bukkit 的离线工具使用
+ * 使用与 Bukkit 相同版本的 SnakeYAML 解析 (打包进插件 jar 并重定位)，键和纯量的类型与插件加载时一致
+ */
+public final class YamlSettingsSection implements SettingsSection {
+
+    private final Map<String, Object> values;
+
+    private YamlSettingsSection(Map<?, ?> map) {
+        // 与 Bukkit 一致，数字和布尔值等非字符串的键按其字符串形式访问
+        this.values = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                values.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 读取 UTF-8 编码的 YAML 文件，空文档返回空配置段
+     * @throws IllegalArgumentException YAML 语法错误或顶层不是映射
+     */
+    public static YamlSettingsSection load(Path file) throws IOException {
+        Object document;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            document = new Yaml(new SafeConstructor()).load(reader);
+        } catch (YAMLException e) {
+            throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+        }
+
+        if (document == null) {
+            return new YamlSettingsSection(Collections.emptyMap());
+        }
+        if (!(document instanceof Map)) {
+            throw new IllegalArgumentException(file + ": 顶层不是键值映射");
+        }
+        return new YamlSettingsSection((Map<?, ?>) document);
+    }
+
+    @Override
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean def) {
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : def;
+    }
+
+    @Override
+    public int getInt(String key, int def) {
+        Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : def;
+    }
+
+    @Override
+    public boolean isInt(String key) {
+        return values.get(key) instanceof Integer;
+    }
+
+    @Override
+    public double getDouble(String key, double def) {
+        Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : def;
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        Object value = values.get(key);
+        return value == null || value instanceof Map || value instanceof List ? def : value.toString();
+    }
+
+    @Override
+    public List<String> getStringList(String key) {
+        Object value = values.get(key);
+        List<String> result = new ArrayList<>();
+        if (value instanceof List) {
+            // 与 Bukkit 一致，只收集字符串和基本类型的元素
+            for (Object item : (List<?>) value) {
+                if (item instanceof String || item instanceof Number || item instanceof Boolean
+                        || item instanceof Character) {
+                    result.add(item.toString());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public SettingsSection getSection(String key) {
+        Object value = values.get(key);
+        return value instanceof Map ? new YamlSettingsSection((Map<?, ?>) value) : null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.algorithm.AhoCorasick;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 编译后自动机的二进制缓存
+ * 完整构建后把字符串匹配自动机写入数据文件夹，下次启动或重载时若词库和检测设置未变，
+ * 直接用 FileChannel.map 映射文件并批量复制数组 (MAPPED 存储方式下直接引用映射)，跳过 Trie 构建和双数组编译。
+ *
+ * 文件头包含魔数、格式版本和 SHA-256 键 (词库内容 + 影响编译结果的设置)，任一不符即视为未命中，
+ * 由调用方重新构建并覆盖缓存。写入先落到临时文件再原子替换，半写的文件不会被读到。
+ */
+public final class AutomatonCache {
+
+    /** "CFAC" */
+    private static final int MAGIC = 0x43464143;
+    /** 自动机序列化格式变化时递增 */
+    private static final int VERSION = 3;
+    private static final int KEY_LENGTH = 32;
+    private static final int HEADER_LENGTH = 4 + 4 + KEY_LENGTH;
+
+    private final File file;
+    private final Consumer<Exception> errorHandler;
+
+    /**
+     * @param errorHandler 读写失败时的回调 (缓存文件不存在不算失败)，在构建线程上调用
+     */
+    public AutomatonCache(File file, Consumer<Exception> errorHandler) {
+        this.file = file;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * 计算缓存键：词库按给定顺序参与计算，调用方应保证相同词库的顺序一致
+     */
+    public static byte[] keyOf(List<String> words, DetectionSettings settings) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JVM 不支持 SHA-256", e);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(1 + 8 + 8);
+        header.put((byte) (settings.isCaseSensitive() ? 1 : 0));
+        header.putLong(settings.getNormalizer().fingerprint());
+        header.putLong(settings.getVariantExpander().fingerprint());
+        digest.update(header.array());
+
+        for (String word : words) {
+            digest.update(word.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * 读取与 key 匹配的自动机，缓存不存在、已过期或损坏时返回 null
+     */
+    public AhoCorasick load(byte[] key, DetectionSettings settings) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // 先用普通读取校验文件头，不匹配时不建立映射，随后覆盖文件不会受映射影响
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return null;
+            }
+
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) return null;
+            byte[] stored = new byte[KEY_LENGTH];
+            header.get(stored);
+            if (!Arrays.equals(stored, key)) return null;
+
+            MappedByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_LENGTH, channel.size() - HEADER_LENGTH);
+            AhoCorasick automaton = AhoCorasick.readFrom(payload, settings.getNormalizer(), settings.getStorage());
+            return automaton.isCaseSensitive() == settings.isCaseSensitive() ? automaton : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            errorHandler.accept(e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存，覆盖旧文件
+     */
+    public void save(byte[] key, AhoCorasick automaton) {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("无法创建目录: " + parent);
+            }
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(key);
+                automaton.writeTo(out);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temp.delete();
+            errorHandler.accept(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.algorithm.LayeredMatcher;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 跨消息检测
+ * 为每个玩家保存上一条消息结束时的自动机状态 (一个 long) 和时间，
+ * 下一条消息从该状态继续扫描，"傻" 和 "逼" 分两条消息发送也能命中，无需拼接或保存历史消息。
+ *
+ * 状态只在时间窗口内有效，超时或词库变化后从根状态重新开始。
+ * 玩家退出时应调用 {@link #forget(UUID)}；跟踪的玩家数量有上限，达到上限时先清理过期状态，
+ * 仍然已满则不再跟踪新玩家。
+ */
+public final class CrossMessageTracker {
+
+    private final long windowNanos;
+    private final int maxPlayers;
+    private final Map<UUID, Stream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * @param windowMillis 相邻两条消息的最大间隔，超过后不再连接
+     * @param maxPlayers 最多同时跟踪的玩家数量
+     */
+    public CrossMessageTracker(long windowMillis, int maxPlayers) {
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.maxPlayers = maxPlayers;
+    }
+
+    /**
+     * 检测起点落在玩家此前消息中的命中 (完全位于本条消息中的命中由 {@link DetectionSnapshot#inspect} 负责)，
+     * 并把玩家的状态推进到本条消息末尾，未命中返回 null
+     */
+    public FilterVerdict inspect(UUID playerId, DetectionSnapshot snapshot, CharSequence message) {
+        Stream stream = streams.get(playerId);
+        if (stream == null) {
+            if (streams.size() >= maxPlayers && !evictExpired()) {
+                return null;
+            }
+            stream = streams.computeIfAbsent(playerId, k -> new Stream());
+        }
+
+        // 同一玩家的聊天事件依次触发，对单个状态的访问只需保证可见性
+        synchronized (stream) {
+            long now = System.nanoTime();
+            if (now - stream.updatedAt > windowNanos) {
+                stream.matcher = null;
+            }
+            stream.updatedAt = now;
+            return snapshot.inspectAcross(message, stream);
+        }
+    }
+
+    /**
+     * 丢弃玩家的状态，下一条消息从根状态开始 (如本条消息已被拦截或替换)
+     */
+    public void reset(UUID playerId) {
+        Stream stream = streams.get(playerId);
+        if (stream != null) {
+            synchronized (stream) {
+                stream.matcher = null;
+            }
+        }
+    }
+
+    /**
+     * 玩家退出时移除其状态
+     */
+    public void forget(UUID playerId) {
+        streams.remove(playerId);
+    }
+
+    /**
+     * 当前跟踪的玩家数量
+     */
+    public int size() {
+        return streams.size();
+    }
+
+    /**
+     * 清理超出时间窗口的状态，返回清理后是否有空位
+     */
+    private boolean evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Stream> iterator = streams.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().updatedAt > windowNanos) {
+                iterator.remove();
+            }
+        }
+        return streams.size() < maxPlayers;
+    }
+
+    /**
+     * 单个玩家的流式状态：产生状态的匹配器实例和该匹配器上的自动机状态
+     * matcher 与当前快照的匹配器不同 (或为 null) 时状态无效
+     */
+    static final class Stream {
+        LayeredMatcher matcher;
+        long state = LayeredMatcher.START_STATE;
+        volatile long updatedAt = System.nanoTime();
+    }
+}
@@ -0,0 +1,192 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.algorithm.FuzzyMatcher;
+import com.laoda.chatfilter.algorithm.LayeredMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * 检测性能基准
+ * 用当前词库生成一批模拟聊天消息，分别测量字符串匹配和模糊匹配的单条耗时，
+ * 用于评估在实际词库规模下开启模糊匹配的代价。
+ */
+public final class DetectionBenchmark {
+
+    /** 未启用模糊匹配时用于评估的默认规则 */
+    private static final NavigableMap<Integer, Integer> DEFAULT_FUZZY_DISTANCES = new TreeMap<>();
+
+    static {
+        DEFAULT_FUZZY_DISTANCES.put(4, 1);
+        DEFAULT_FUZZY_DISTANCES.put(8, 2);
+    }
+
+    private static final String FILLER = "abcdefghijklmnopqrstuvwxyz 的一是了我不人在他有这个上们来到时大地为子中你说生国年着就那和要";
+    private static final int MESSAGE_LENGTH = 40;
+    private static final int ROUNDS = 5;
+
+    private DetectionBenchmark() {
+    }
+
+    /**
+     * 执行基准测试 (耗时数秒，不要在主线程调用)
+     * @param messageCount 每轮检测的消息数量
+     */
+    public static Result run(DetectionSnapshot snapshot, int messageCount) {
+        List<String> words = snapshot.getWords();
+        DetectionSettings settings = snapshot.getSettings();
+        List<String> messages = generateMessages(words, messageCount, new Random(42));
+
+        // 未启用模糊匹配时临时构建一个，用于预估开启后的代价
+        long buildStart = System.nanoTime();
+        FuzzyMatcher fuzzyMatcher = snapshot.getFuzzyMatcher();
+        if (fuzzyMatcher == null) {
+            fuzzyMatcher = new FuzzyMatcher(words, settings.isCaseSensitive(), settings.getNormalizer(),
+                    settings.isFuzzyEnabled() ? settings.getFuzzyDistances() : DEFAULT_FUZZY_DISTANCES);
+        }
+        long fuzzyBuildNanos = snapshot.getFuzzyMatcher() == null ? System.nanoTime() - buildStart : 0;
+
+        LayeredMatcher wordMatcher = snapshot.getWordMatcher();
+        int literalHits = 0;
+        int fuzzyHits = 0;
+        long literalNanos = Long.MAX_VALUE;
+        long fuzzyNanos = Long.MAX_VALUE;
+
+        // 第一轮用于预热，之后取最快的一轮
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            int hits = 0;
+            for (String message : messages) {
+                if (wordMatcher.findFirstId(message) >= 0) hits++;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round > 0) {
+                literalNanos = Math.min(literalNanos, elapsed);
+                literalHits = hits;
+            }
+
+            start = System.nanoTime();
+            hits = 0;
+            for (String message : messages) {
+                if (fuzzyMatcher.findFirst(message) != null) hits++;
+            }
+            elapsed = System.nanoTime() - start;
+            if (round > 0) {
+                fuzzyNanos = Math.min(fuzzyNanos, elapsed);
+                fuzzyHits = hits;
+            }
+        }
+
+        return new Result(words.size(), messageCount, fuzzyMatcher.getWordCount(), fuzzyMatcher.getPieceCount(),
+                fuzzyBuildNanos, literalNanos / messageCount, fuzzyNanos / messageCount, literalHits, fuzzyHits);
+    }
+
+    /**
+     * 随机文本中按一定比例混入原样、交换相邻字符和重复字符的敏感词
+     */
+    private static List<String> generateMessages(List<String> words, int count, Random random) {
+        List<String> messages = new ArrayList<>(count);
+        StringBuilder builder = new StringBuilder(MESSAGE_LENGTH * 2);
+        for (int i = 0; i < count; i++) {
+            builder.setLength(0);
+            while (builder.length() < MESSAGE_LENGTH) {
+                builder.append(FILLER.charAt(random.nextInt(FILLER.length())));
+            }
+            if (!words.isEmpty() && random.nextInt(10) == 0) {
+                String word = words.get(random.nextInt(words.size()));
+                int position = random.nextInt(builder.length());
+                builder.insert(position, mutate(word, random));
+            }
+            messages.add(builder.toString());
+        }
+        return messages;
+    }
+
+    private static String mutate(String word, Random random) {
+        if (word.length() < 2) return word;
+
+        char[] chars = word.toCharArray();
+        int index = random.nextInt(chars.length - 1);
+        switch (random.nextInt(3)) {
+            case 0:
+                char temp = chars[index];
+                chars[index] = chars[index + 1];
+                chars[index + 1] = temp;
+                return new String(chars);
+            case 1:
+                return word.substring(0, index + 1) + chars[index] + word.substring(index + 1);
+            default:
+                return word;
+        }
+    }
+
+    /**
+     * 基准测试结果
+     */
+    public static final class Result {
+        private final int wordCount;
+        private final int messageCount;
+        private final int fuzzyWordCount;
+        private final int fuzzyPieceCount;
+        private final long fuzzyBuildNanos;
+        private final long literalNanosPerMessage;
+        private final long fuzzyNanosPerMessage;
+        private final int literalHits;
+        private final int fuzzyHits;
+
+        Result(int wordCount, int messageCount, int fuzzyWordCount, int fuzzyPieceCount, long fuzzyBuildNanos,
+               long literalNanosPerMessage, long fuzzyNanosPerMessage, int literalHits, int fuzzyHits) {
+            this.wordCount = wordCount;
+            this.messageCount = messageCount;
+            this.fuzzyWordCount = fuzzyWordCount;
+            this.fuzzyPieceCount = fuzzyPieceCount;
+            this.fuzzyBuildNanos = fuzzyBuildNanos;
+            this.literalNanosPerMessage = literalNanosPerMessage;
+            this.fuzzyNanosPerMessage = fuzzyNanosPerMessage;
+            this.literalHits = literalHits;
+            this.fuzzyHits = fuzzyHits;
+        }
+
+        public int getWordCount() {
+            return wordCount;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+
+        public int getFuzzyWordCount() {
+            return fuzzyWordCount;
+        }
+
+        public int getFuzzyPieceCount() {
+            return fuzzyPieceCount;
+        }
+
+        /**
+         * 临时构建模糊匹配器的耗时，已启用模糊匹配时为 0
+         */
+        public long getFuzzyBuildNanos() {
+            return fuzzyBuildNanos;
+        }
+
+        public long getLiteralNanosPerMessage() {
+            return literalNanosPerMessage;
+        }
+
+        public long getFuzzyNanosPerMessage() {
+            return fuzzyNanosPerMessage;
+        }
+
+        public int getLiteralHits() {
+            return literalHits;
+        }
+
+        public int getFuzzyHits() {
+            return fuzzyHits;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.algorithm.AhoCorasick;
+import com.laoda.chatfilter.algorithm.AutomatonStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 检测快照管理器
+ * 在独立线程上串行构建新快照，构建完成后通过一次原子引用替换发布。
+ * 聊天线程只读取当前快照，既不会看到构建到一半的自动机，也不会因重建而阻塞。
+ *
+ * 单个词的增删以增量方式发布，积累的增量在空闲一段时间或超过阈值后于后台合并。
+ */
+public class DetectionEngine {
+
+    /** 增量超过该数量时立即合并 */
+    private static final int MERGE_THRESHOLD = 256;
+    /** 最后一次增删后等待多久再合并 (秒) */
+    private static final long MERGE_DELAY_SECONDS = 30;
+
+    private final AtomicReference<DetectionSnapshot> current;
+    private final ScheduledExecutorService rebuildExecutor;
+    private ScheduledFuture<?> pendingMerge;
+    private volatile AutomatonCache cache;
+
+    public DetectionEngine() {
+        this.current = new AtomicReference<>(DetectionSnapshot.empty());
+        this.rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChatFilter-Rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 获取当前生效的快照
+     */
+    public DetectionSnapshot current() {
+        return current.get();
+    }
+
+    /**
+     * 在后台线程构建新快照并在完成后发布
+     * @param words 敏感词，调用时立即复制，之后对原集合的修改不影响本次构建
+     * @return 构建完成 (已发布) 的快照；构建失败时旧快照保持不变
+     */
+    public CompletableFuture<DetectionSnapshot> rebuild(Collection<String> words, DetectionSettings settings) {
+        final List<String> wordsCopy = new ArrayList<>(words);
+        final AutomatonCache automatonCache = cache;
+        return CompletableFuture.supplyAsync(() -> {
+            cancelPendingMerge();
+            // 排序使构建结果和缓存键与集合的遍历顺序无关
+            Collections.sort(wordsCopy);
+
+            DetectionSnapshot snapshot;
+            if (automatonCache == null || settings.isUseRegex()) {
+                snapshot = new DetectionSnapshot(wordsCopy, settings);
+            } else {
+                byte[] key = AutomatonCache.keyOf(wordsCopy, settings);
+                AhoCorasick compiled = automatonCache.load(key, settings);
+                boolean loaded = compiled != null;
+                if (compiled == null) {
+                    AhoCorasick built = DetectionSnapshot.compile(wordsCopy, settings);
+                    automatonCache.save(key, built);
+                    // 映射模式直接引用刚写入的文件，不在直接内存中再保留一份
+                    if (settings.getStorage() == AutomatonStorage.MAPPED) {
+                        compiled = automatonCache.load(key, settings);
+                    }
+                    if (compiled == null) {
+                        compiled = built.toStorage(settings.getStorage());
+                    }
+                }
+                snapshot = new DetectionSnapshot(wordsCopy, settings, compiled, loaded);
+            }
+            current.set(snapshot);
+            return snapshot;
+        }, rebuildExecutor);
+    }
+
+    /**
+     * 设置完整构建使用的编译缓存，为 null 时不读写缓存 (从下一次完整构建开始生效)
+     */
+    public void setCache(AutomatonCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * 增量添加一个敏感词
+     */
+    public CompletableFuture<DetectionSnapshot> addWord(String word) {
+        return CompletableFuture.supplyAsync(() -> {
+            DetectionSnapshot snapshot = current.get();
+            DetectionSnapshot updated = snapshot.withWord(word);
+            if (updated == null) {
+                // 正则模式不支持增量，直接完整重建
+                List<String> words = new ArrayList<>(snapshot.getWords());
+                words.add(word);
+                updated = new DetectionSnapshot(words, snapshot.getSettings());
+            }
+            publishEdit(updated);
+            return updated;
+        }, rebuildExecutor);
+    }
+
+    /**
+     * 增量删除一个敏感词
+     */
+    public CompletableFuture<DetectionSnapshot> removeWord(String word) {
+        return CompletableFuture.supplyAsync(() -> {
+            DetectionSnapshot snapshot = current.get();
+            DetectionSnapshot updated = snapshot.withoutWord(word);
+            if (updated == null) {
+                List<String> words = new ArrayList<>(snapshot.getWords());
+                words.remove(word);
+                updated = new DetectionSnapshot(words, snapshot.getSettings());
+            }
+            publishEdit(updated);
+            return updated;
+        }, rebuildExecutor);
+    }
+
+    /**
+     * 关闭后台构建线程
+     */
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 发布增量结果并安排合并 (仅在构建线程上调用)
+     */
+    private void publishEdit(DetectionSnapshot updated) {
+        current.set(updated);
+
+        cancelPendingMerge();
+        int pending = updated.getWordMatcher().getPendingEdits();
+        if (pending >= MERGE_THRESHOLD) {
+            mergePending();
+        } else if (pending > 0) {
+            pendingMerge = rebuildExecutor.schedule(this::mergePending, MERGE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void mergePending() {
+        pendingMerge = null;
+        DetectionSnapshot snapshot = current.get();
+        if (snapshot.getWordMatcher().getPendingEdits() > 0) {
+            current.set(snapshot.merged());
+        }
+    }
+
+    private void cancelPendingMerge() {
+        if (pendingMerge != null) {
+            pendingMerge.cancel(false);
+            pendingMerge = null;
+        }
+    }
+}
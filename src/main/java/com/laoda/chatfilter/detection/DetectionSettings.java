@@ -0,0 +1,256 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.algorithm.AutomatonStorage;
+import com.laoda.chatfilter.algorithm.CharNormalizer;
+import com.laoda.chatfilter.algorithm.VariantExpander;
+import com.laoda.chatfilter.config.BukkitSettingsSection;
+import com.laoda.chatfilter.config.SettingsSection;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 检测设置
+ * config.yml 中 detection-settings 段的不可变快照，随检测快照一起发布
+ */
+public final class DetectionSettings {
+
+    private static final NavigableMap<Integer, Integer> NO_FUZZY =
+            Collections.unmodifiableNavigableMap(new TreeMap<Integer, Integer>());
+
+    private static final DetectionSettings DEFAULT =
+            new DetectionSettings(false, false, CharNormalizer.NONE, VariantExpander.NONE, NO_FUZZY,
+                    SeverityPolicy.CANCEL_ALL, AutomatonStorage.HEAP, 0);
+
+    private final boolean caseSensitive;
+    private final boolean useRegex;
+    private final CharNormalizer normalizer;
+    private final VariantExpander variantExpander;
+    private final NavigableMap<Integer, Integer> fuzzyDistances;
+    private final SeverityPolicy severityPolicy;
+    private final AutomatonStorage storage;
+    private final int verdictCacheSize;
+
+    /**
+     * @param fuzzyDistances 模糊匹配规则 (最小词长 -> 最大编辑距离)，为空表示不启用
+     * @param storage 字符串匹配自动机的存储方式
+     * @param verdictCacheSize 检测结论缓存的消息数量，0 表示不缓存
+     */
+    public DetectionSettings(boolean caseSensitive, boolean useRegex, CharNormalizer normalizer,
+                             VariantExpander variantExpander, NavigableMap<Integer, Integer> fuzzyDistances,
+                             SeverityPolicy severityPolicy, AutomatonStorage storage, int verdictCacheSize) {
+        this.caseSensitive = caseSensitive;
+        this.useRegex = useRegex;
+        this.normalizer = normalizer;
+        this.variantExpander = variantExpander;
+        this.fuzzyDistances = fuzzyDistances;
+        this.severityPolicy = severityPolicy;
+        this.storage = storage;
+        this.verdictCacheSize = verdictCacheSize;
+    }
+
+    /**
+     * 默认设置：不区分大小写，字符串匹配，不做规范化，不缓存结论
+     */
+    public static DetectionSettings defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * 从 detection-settings 配置段加载
+     */
+    public static DetectionSettings load(ConfigurationSection section) {
+        return load(BukkitSettingsSection.wrap(section));
+    }
+
+    /**
+     * 从 detection-settings 配置段加载 (不依赖 Bukkit，供离线工具使用)
+     */
+    public static DetectionSettings load(SettingsSection section) {
+        if (section == null) {
+            return DEFAULT;
+        }
+
+        boolean caseSensitive = section.getBoolean("case-sensitive", false);
+        boolean useRegex = section.getBoolean("use-regex", false);
+        CharNormalizer.Builder builder = new CharNormalizer.Builder();
+        loadNormalization(builder, section.getSection("normalization"));
+        loadNoiseSkipping(builder, section.getSection("noise-skipping"));
+        return new DetectionSettings(caseSensitive, useRegex, builder.build(),
+                loadVariants(section.getSection("variants")),
+                loadFuzzyDistances(section.getSection("fuzzy-matching")),
+                SeverityPolicy.CANCEL_ALL, AutomatonStorage.fromString(section.getString("storage", "heap")),
+                Math.max(0, section.getInt("verdict-cache-size", 4096)));
+    }
+
+    private static void loadNormalization(CharNormalizer.Builder builder, SettingsSection section) {
+        if (section == null || !section.getBoolean("enabled", true)) {
+            return;
+        }
+
+        if (section.getBoolean("full-width", true)) {
+            builder.foldFullWidth();
+        }
+        if (section.getBoolean("zero-width", true)) {
+            builder.stripZeroWidth();
+        }
+        if (section.getBoolean("color-codes", true)) {
+            builder.stripColorCodes();
+        }
+        if (section.getBoolean("traditional-chinese", true)) {
+            builder.mapTraditional();
+        }
+        if (section.getBoolean("homoglyphs", true)) {
+            builder.mapHomoglyphs();
+        }
+
+        // 自定义映射，值为空字符串表示忽略该字符 (格式错误的条目由 ConfigValidator 报告)
+        SettingsSection custom = section.getSection("custom-mappings");
+        if (custom != null) {
+            for (String from : custom.getKeys()) {
+                String to = custom.getString(from, "");
+                if (from.length() != 1 || to.length() > 1) continue;
+                if (to.isEmpty()) {
+                    builder.ignore(from.charAt(0));
+                } else {
+                    builder.map(from.charAt(0), to.charAt(0));
+                }
+            }
+        }
+    }
+
+    /**
+     * 噪声跳过：分隔符、标点、emoji 和重复字符在匹配时被忽略，需在字符映射之后应用
+     */
+    private static void loadNoiseSkipping(CharNormalizer.Builder builder, SettingsSection section) {
+        if (section == null || !section.getBoolean("enabled", false)) {
+            return;
+        }
+
+        if (section.getBoolean("whitespace", true)) {
+            builder.skipWhitespace();
+        }
+        if (section.getBoolean("punctuation", true)) {
+            builder.skipPunctuation();
+        }
+        if (section.getBoolean("emoji", true)) {
+            builder.skipEmoji();
+        }
+        if (section.getBoolean("repeated-characters", true)) {
+            builder.collapseRepeats();
+        }
+        String extra = section.getString("extra-characters", "");
+        for (int i = 0; i < extra.length(); i++) {
+            builder.ignore(extra.charAt(i));
+        }
+    }
+
+    /**
+     * 拼音、首字母和同音字变体
+     */
+    private static VariantExpander loadVariants(SettingsSection section) {
+        if (section == null || !section.getBoolean("enabled", false)) {
+            return VariantExpander.NONE;
+        }
+
+        return new VariantExpander(
+                section.getBoolean("pinyin", true),
+                section.getBoolean("initials", true),
+                section.getBoolean("homophones", true),
+                section.getInt("homophones-per-char", 3),
+                section.getInt("max-variants", 16));
+    }
+
+    /**
+     * 模糊匹配规则，键为最小词长，值为允许的最大编辑距离 (格式错误的条目由 ConfigValidator 报告)
+     */
+    private static NavigableMap<Integer, Integer> loadFuzzyDistances(SettingsSection section) {
+        if (section == null || !section.getBoolean("enabled", false)) {
+            return NO_FUZZY;
+        }
+
+        SettingsSection rules = section.getSection("max-distance");
+        if (rules == null) {
+            return NO_FUZZY;
+        }
+
+        NavigableMap<Integer, Integer> distances = new TreeMap<>();
+        for (String key : rules.getKeys()) {
+            try {
+                int length = Integer.parseInt(key);
+                int distance = rules.getInt(key, 0);
+                if (length > 0 && distance >= 0) {
+                    distances.put(length, distance);
+                }
+            } catch (NumberFormatException e) {
+                // 跳过非数字的词长
+            }
+        }
+        return Collections.unmodifiableNavigableMap(distances);
+    }
+
+    /**
+     * 返回切换了正则模式的副本 (正则表达式校验失败时回退到字符串匹配)
+     */
+    public DetectionSettings withUseRegex(boolean useRegex) {
+        return useRegex == this.useRegex ? this : new DetectionSettings(caseSensitive, useRegex, normalizer,
+                variantExpander, fuzzyDistances, severityPolicy, storage, verdictCacheSize);
+    }
+
+    /**
+     * 返回使用指定等级策略的副本 (等级来自 words.yml，与检测设置分开加载)
+     */
+    public DetectionSettings withSeverityPolicy(SeverityPolicy severityPolicy) {
+        return new DetectionSettings(caseSensitive, useRegex, normalizer,
+                variantExpander, fuzzyDistances, severityPolicy, storage, verdictCacheSize);
+    }
+
+    /**
+     * 返回使用指定结论缓存容量的副本 (影子评估的候选词库不缓存)
+     */
+    public DetectionSettings withVerdictCacheSize(int verdictCacheSize) {
+        return verdictCacheSize == this.verdictCacheSize ? this : new DetectionSettings(caseSensitive, useRegex,
+                normalizer, variantExpander, fuzzyDistances, severityPolicy, storage, verdictCacheSize);
+    }
+
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    public boolean isUseRegex() {
+        return useRegex;
+    }
+
+    public CharNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    public VariantExpander getVariantExpander() {
+        return variantExpander;
+    }
+
+    public NavigableMap<Integer, Integer> getFuzzyDistances() {
+        return fuzzyDistances;
+    }
+
+    public boolean isFuzzyEnabled() {
+        return !fuzzyDistances.isEmpty();
+    }
+
+    public SeverityPolicy getSeverityPolicy() {
+        return severityPolicy;
+    }
+
+    public AutomatonStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * 检测结论缓存的消息数量，0 表示不缓存
+     */
+    public int getVerdictCacheSize() {
+        return verdictCacheSize;
+    }
+}
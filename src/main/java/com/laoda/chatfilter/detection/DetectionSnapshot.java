@@ -0,0 +1,473 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.algorithm.AhoCorasick;
+import com.laoda.chatfilter.algorithm.FuzzyMatcher;
+import com.laoda.chatfilter.algorithm.LayeredMatcher;
+import com.laoda.chatfilter.algorithm.RegexMatcher;
+import com.laoda.chatfilter.algorithm.SpanCollector;
+import com.laoda.chatfilter.algorithm.VariantExpander;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 检测快照
+ * 一次编译完成的词库和检测设置，构造后不可变，可被聊天线程无锁并发读取
+ */
+public final class DetectionSnapshot {
+
+    /** 替换模式下每个聊天线程复用的命中收集器 */
+    private static final ThreadLocal<SpanCollector> SPANS = ThreadLocal.withInitial(SpanCollector::new);
+
+    /** 批量检测的消息数达到该值时分配到 ForkJoinPool 并行检测 */
+    private static final int PARALLEL_BATCH_THRESHOLD = 256;
+
+    private static final DetectionSnapshot EMPTY =
+            new DetectionSnapshot(Collections.<String>emptyList(), DetectionSettings.defaults());
+
+    private final DetectionSettings settings;
+    private final LayeredMatcher wordMatcher;
+    private final RegexMatcher regexMatcher;
+    // 模糊匹配器只在完整构建和合并时重建，期间删除的词通过 fuzzyExcluded 排除
+    private final FuzzyMatcher fuzzyMatcher;
+    private final Set<String> fuzzyExcluded;
+    private final boolean loadedFromCache;
+    // 按模式编号索引的元数据：基础自动机的编号在前，增量自动机的编号依次排在其后
+    private final WordMetadata baseMetadata;
+    private final WordMetadata deltaMetadata;
+    // 每个快照独享结论缓存，词库变化时随快照整体替换；未启用时为 null
+    private final VerdictCache verdictCache;
+    // 经 inspect(CharSequence) 逐条检测的消息数和其中被首字符预过滤排除的消息数，增量更新的快照沿用同一组计数
+    private final LongAdder inspected;
+    private final LongAdder prefilterRejected;
+
+    public DetectionSnapshot(Collection<String> words, DetectionSettings settings) {
+        this(words, settings, null, false);
+    }
+
+    /**
+     * @param compiled 已编译的字符串匹配自动机 (如从缓存恢复)，为 null 时由 words 构建
+     * @param loadedFromCache compiled 是否直接来自编译缓存
+     */
+    DetectionSnapshot(Collection<String> words, DetectionSettings settings, AhoCorasick compiled,
+                      boolean loadedFromCache) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(words));
+        boolean useRegex = settings.isUseRegex();
+        this.settings = settings;
+        this.loadedFromCache = loadedFromCache;
+
+        if (compiled == null) {
+            compiled = compile(distinct, settings).toStorage(settings.getStorage());
+        }
+        this.wordMatcher = new LayeredMatcher(compiled);
+        this.baseMetadata = WordMetadata.of(compiled, settings.getSeverityPolicy());
+        this.deltaMetadata = WordMetadata.EMPTY;
+        this.regexMatcher = useRegex ? new RegexMatcher(distinct, settings.isCaseSensitive()) : null;
+        this.fuzzyMatcher = !useRegex && settings.isFuzzyEnabled()
+                ? new FuzzyMatcher(distinct, settings.isCaseSensitive(), settings.getNormalizer(),
+                        settings.getFuzzyDistances())
+                : null;
+        this.fuzzyExcluded = Collections.emptySet();
+        this.verdictCache = newVerdictCache(settings);
+        this.inspected = new LongAdder();
+        this.prefilterRejected = new LongAdder();
+    }
+
+    private DetectionSnapshot(DetectionSnapshot previous, LayeredMatcher wordMatcher, Set<String> fuzzyExcluded) {
+        this.settings = previous.settings;
+        this.wordMatcher = wordMatcher;
+        this.regexMatcher = previous.regexMatcher;
+        this.fuzzyMatcher = previous.fuzzyMatcher;
+        this.fuzzyExcluded = fuzzyExcluded;
+        this.loadedFromCache = false;
+        this.baseMetadata = previous.baseMetadata;
+        this.deltaMetadata = WordMetadata.of(wordMatcher.getDelta(), settings.getSeverityPolicy());
+        this.verdictCache = newVerdictCache(settings);
+        this.inspected = previous.inspected;
+        this.prefilterRejected = previous.prefilterRejected;
+    }
+
+    private static VerdictCache newVerdictCache(DetectionSettings settings) {
+        return settings.getVerdictCacheSize() > 0 ? new VerdictCache(settings.getVerdictCacheSize()) : null;
+    }
+
+    /**
+     * 构建字符串匹配自动机 (位于堆内)，正则模式下字符串匹配器不参与检测，只返回空自动机
+     */
+    static AhoCorasick compile(Collection<String> words, DetectionSettings settings) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(words));
+
+        // 每个敏感词展开为若干匹配键 (原词及其变体)，命中任一键都报告原词
+        // 原词全部排在变体之前，变体与另一个敏感词相同时归属于该敏感词本身
+        List<String> keys = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        if (!settings.isUseRegex()) {
+            keys.addAll(distinct);
+            labels.addAll(distinct);
+            VariantExpander expander = settings.getVariantExpander();
+            if (expander.isEnabled()) {
+                // 各词的展开互不相关，并行计算后按原顺序拼接，结果与顺序展开一致
+                List<List<String>> expanded = distinct.parallelStream()
+                        .map(expander::expand)
+                        .collect(Collectors.toList());
+                for (int index = 0; index < distinct.size(); index++) {
+                    List<String> variants = expanded.get(index);
+                    for (int i = 1; i < variants.size(); i++) {
+                        keys.add(variants.get(i));
+                        labels.add(distinct.get(index));
+                    }
+                }
+            }
+        }
+        return new AhoCorasick(keys, labels, settings.isCaseSensitive(), settings.getNormalizer());
+    }
+
+    /**
+     * 尚未加载任何词库时使用的空快照
+     */
+    public static DetectionSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 检测消息，返回第一个命中的敏感词 (命中变体时返回原词)，未命中返回 null
+     */
+    public String detect(CharSequence message) {
+        if (regexMatcher != null) {
+            return regexMatcher.findFirst(message);
+        }
+        String word = wordMatcher.mayMatch(message) ? wordMatcher.findFirst(message) : null;
+        if (word == null && fuzzyMatcher != null) {
+            // 精确匹配未命中时再做模糊匹配
+            word = fuzzyMatcher.findFirst(message, fuzzyExcluded);
+        }
+        return word;
+    }
+
+    /**
+     * 检测消息并按敏感词等级决定拦截还是替换，未命中返回 null
+     * 替换采用最左最长、互不重叠的命中区间；正则和模糊匹配的命中同样按等级处理，替换其匹配到的原文片段。
+     * 启用结论缓存时，近期检测过的相同消息直接返回缓存的结论。
+     * 逐条检测的消息 (如聊天) 计入预过滤统计，批量检测不计入
+     */
+    public FilterVerdict inspect(CharSequence message) {
+        return inspect(message, true);
+    }
+
+    private FilterVerdict inspect(CharSequence message, boolean counted) {
+        if (counted && regexMatcher == null) {
+            inspected.increment();
+        }
+        if (verdictCache == null || !(message instanceof String)) {
+            return inspectUncached(message, counted);
+        }
+
+        String text = (String) message;
+        FilterVerdict cached = verdictCache.get(text);
+        if (cached != null) {
+            return VerdictCache.isClean(cached) ? null : cached;
+        }
+        FilterVerdict verdict = inspectUncached(message, counted);
+        verdictCache.put(text, verdict);
+        return verdict;
+    }
+
+    /**
+     * 批量检测，结论按输入顺序返回 (未命中或消息为 null 时对应位置为 null)
+     * 整批使用同一个快照；消息较多时在 ForkJoinPool 上并行检测，
+     * 各线程复用自己的命中收集器和位置缓冲区，吞吐量随核心数近似线性增长
+     */
+    public List<FilterVerdict> inspectAll(List<? extends CharSequence> messages) {
+        CharSequence[] items = messages.toArray(new CharSequence[0]);
+        FilterVerdict[] verdicts = new FilterVerdict[items.length];
+        IntStream indices = IntStream.range(0, items.length);
+        if (items.length >= PARALLEL_BATCH_THRESHOLD) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> verdicts[i] = items[i] == null ? null : inspect(items[i], false));
+        return Arrays.asList(verdicts);
+    }
+
+    /**
+     * 批量检测流中的消息，结论按流的顺序返回
+     */
+    public List<FilterVerdict> inspectAll(Stream<? extends CharSequence> messages) {
+        return inspectAll(messages.collect(Collectors.<CharSequence>toList()));
+    }
+
+    private FilterVerdict inspectUncached(CharSequence message, boolean counted) {
+        if (regexMatcher != null) {
+            String pattern = regexMatcher.findFirst(message);
+            return pattern != null ? inspectUnindexed(message, pattern) : null;
+        }
+
+        int firstId = prefilter(message, counted) ? wordMatcher.findFirstId(message) : -1;
+        if (firstId < 0) {
+            String word = fuzzyMatcher != null ? fuzzyMatcher.findFirst(message, fuzzyExcluded) : null;
+            return word != null ? inspectUnindexed(message, word) : null;
+        }
+
+        SeverityPolicy policy = settings.getSeverityPolicy();
+        int severity = severityOf(firstId);
+        if (!policy.allowsMasking() || policy.shouldCancel(severity)) {
+            return verdictOf(firstId, null);
+        }
+
+        // 需要替换时再收集全部命中，同时找出等级最高的词
+        SpanCollector spans = SPANS.get();
+        spans.reset();
+        wordMatcher.search(message, spans);
+        int worstId = firstId;
+        for (int i = 0; i < spans.size(); i++) {
+            int hitSeverity = severityOf(spans.getId(i));
+            if (hitSeverity > severity) {
+                worstId = spans.getId(i);
+                severity = hitSeverity;
+            }
+        }
+        if (policy.shouldCancel(severity)) {
+            return verdictOf(worstId, null);
+        }
+
+        spans.selectLeftmostLongest();
+        return verdictOf(worstId, spans.mask(message, policy.getMaskChar()));
+    }
+
+    /**
+     * 正则和模糊匹配的命中：与字符串匹配相同的等级规则，需要替换时再收集全部命中区间
+     * 这类命中没有预先编译的元数据，等级等信息按敏感词向策略查询
+     */
+    private FilterVerdict inspectUnindexed(CharSequence message, String firstWord) {
+        SeverityPolicy policy = settings.getSeverityPolicy();
+        int severity = policy.severityOf(firstWord);
+        if (!policy.allowsMasking() || policy.shouldCancel(severity)) {
+            return verdictOf(firstWord, null);
+        }
+
+        SpanCollector spans = SPANS.get();
+        spans.reset();
+        if (regexMatcher != null) {
+            regexMatcher.search(message, spans);
+        } else {
+            fuzzyMatcher.search(message, fuzzyExcluded, spans);
+        }
+        String worstWord = firstWord;
+        for (int i = 0; i < spans.size(); i++) {
+            String word = regexMatcher != null ? regexMatcher.getPattern(spans.getId(i))
+                    : fuzzyMatcher.getWord(spans.getId(i));
+            int hitSeverity = policy.severityOf(word);
+            if (hitSeverity > severity) {
+                worstWord = word;
+                severity = hitSeverity;
+            }
+        }
+        // 没有可替换的区间 (如只有空匹配) 时同样拦截
+        if (policy.shouldCancel(severity) || spans.size() == 0) {
+            return verdictOf(worstWord, null);
+        }
+
+        spans.selectLeftmostLongest();
+        return verdictOf(worstWord, spans.mask(message, policy.getMaskChar()));
+    }
+
+    /**
+     * 从玩家上一条消息结束时的状态继续扫描，只报告起点落在此前消息中的命中，
+     * 并把 stream 更新为本条消息结束时的状态。正则模式不支持跨消息检测，总是返回 null
+     * 此前的片段已经发出，替换时只能替换命中在本条消息中的部分；拦截后状态从根状态重新开始
+     */
+    FilterVerdict inspectAcross(CharSequence message, CrossMessageTracker.Stream stream) {
+        if (regexMatcher != null) return null;
+
+        if (stream.matcher != wordMatcher) {
+            stream.matcher = wordMatcher;
+            stream.state = LayeredMatcher.START_STATE;
+        }
+        // 根状态下不含任何首字符的消息不会离开根状态
+        if (stream.state == LayeredMatcher.START_STATE && !wordMatcher.mayMatch(message)) {
+            return null;
+        }
+
+        SpanCollector spans = SPANS.get();
+        spans.reset();
+        stream.state = wordMatcher.resume(stream.state, message,
+                (patternId, start, end) -> start >= 0 || spans.onMatch(patternId, 0, end));
+        if (spans.size() == 0) {
+            return null;
+        }
+
+        SeverityPolicy policy = settings.getSeverityPolicy();
+        int worstId = spans.getId(0);
+        int severity = severityOf(worstId);
+        for (int i = 1; i < spans.size(); i++) {
+            int hitSeverity = severityOf(spans.getId(i));
+            if (hitSeverity > severity) {
+                worstId = spans.getId(i);
+                severity = hitSeverity;
+            }
+        }
+        if (!policy.allowsMasking() || policy.shouldCancel(severity)) {
+            stream.state = LayeredMatcher.START_STATE;
+            return verdictOf(worstId, null);
+        }
+
+        spans.selectLeftmostLongest();
+        return verdictOf(worstId, spans.mask(message, policy.getMaskChar()));
+    }
+
+    /**
+     * 首字符预过滤，返回 false 时跳过自动机 (模糊匹配不受影响，拼写变形可能不含任何首字符)
+     */
+    private boolean prefilter(CharSequence message, boolean counted) {
+        if (wordMatcher.mayMatch(message)) {
+            return true;
+        }
+        if (counted) {
+            prefilterRejected.increment();
+        }
+        return false;
+    }
+
+    /**
+     * 本词库 (含其后的增量更新) 逐条检测的消息数，包括命中结论缓存的消息；正则模式下不计数
+     */
+    public long getInspectedCount() {
+        return inspected.sum();
+    }
+
+    /**
+     * 本词库逐条检测的消息中被首字符预过滤直接排除的消息数
+     */
+    public long getPrefilterRejectedCount() {
+        return prefilterRejected.sum();
+    }
+
+    /**
+     * 由模式编号生成结论，元数据直接从数组读取
+     */
+    private FilterVerdict verdictOf(int id, String maskedMessage) {
+        int baseCount = baseMetadata.size();
+        WordMetadata metadata = id < baseCount ? baseMetadata : deltaMetadata;
+        int index = id < baseCount ? id : id - baseCount;
+        return new FilterVerdict(wordMatcher.getPattern(id), metadata.severity(index), metadata.weight(index),
+                metadata.category(index), maskedMessage);
+    }
+
+    /**
+     * 正则和模糊匹配的命中没有模式编号，按敏感词查询策略
+     */
+    private FilterVerdict verdictOf(String word, String maskedMessage) {
+        SeverityPolicy policy = settings.getSeverityPolicy();
+        return new FilterVerdict(word, policy.severityOf(word), policy.weightOf(word), policy.categoryOf(word),
+                maskedMessage);
+    }
+
+    private int severityOf(int id) {
+        int baseCount = baseMetadata.size();
+        return id < baseCount ? baseMetadata.severity(id) : deltaMetadata.severity(id - baseCount);
+    }
+
+    /**
+     * 增量添加一个敏感词
+     * @return 新快照；正则模式下无法增量更新时返回 null
+     */
+    public DetectionSnapshot withWord(String word) {
+        if (regexMatcher != null) return null;
+        LayeredMatcher updated = wordMatcher.withPattern(word, settings.getVariantExpander().expand(word));
+        return updated == wordMatcher ? this : new DetectionSnapshot(this, updated, editExcluded(word, false));
+    }
+
+    /**
+     * 增量删除一个敏感词
+     * @return 新快照；正则模式下无法增量更新时返回 null
+     */
+    public DetectionSnapshot withoutWord(String word) {
+        if (regexMatcher != null) return null;
+        LayeredMatcher updated = wordMatcher.withoutPattern(word, settings.getVariantExpander().expand(word));
+        return updated == wordMatcher ? this : new DetectionSnapshot(this, updated, editExcluded(word, true));
+    }
+
+    /**
+     * 模糊匹配排除集合的写时复制更新 (新增的词要等合并后才参与模糊匹配)
+     */
+    private Set<String> editExcluded(String word, boolean exclude) {
+        if (fuzzyMatcher == null || fuzzyExcluded.contains(word) == exclude) {
+            return fuzzyExcluded;
+        }
+        Set<String> updated = new HashSet<>(fuzzyExcluded);
+        if (exclude) {
+            updated.add(word);
+        } else {
+            updated.remove(word);
+        }
+        return Collections.unmodifiableSet(updated);
+    }
+
+    /**
+     * 把增量部分合并进新的基础自动机
+     */
+    public DetectionSnapshot merged() {
+        return new DetectionSnapshot(getWords(), settings);
+    }
+
+    /**
+     * 获取快照中生效的全部敏感词
+     */
+    public List<String> getWords() {
+        if (regexMatcher == null) {
+            return wordMatcher.getPatterns();
+        }
+        List<String> words = new ArrayList<>(regexMatcher.getPatterns());
+        words.addAll(regexMatcher.getInvalidPatterns());
+        return words;
+    }
+
+    /**
+     * 获取快照中生效的敏感词数量
+     */
+    public int getWordCount() {
+        return regexMatcher != null ? regexMatcher.getPatterns().size() : wordMatcher.getPatterns().size();
+    }
+
+    public LayeredMatcher getWordMatcher() {
+        return wordMatcher;
+    }
+
+    /**
+     * 获取模糊匹配器，未启用时为 null
+     */
+    public FuzzyMatcher getFuzzyMatcher() {
+        return fuzzyMatcher;
+    }
+
+    /**
+     * 获取正则匹配器，非正则模式下为 null
+     */
+    public RegexMatcher getRegexMatcher() {
+        return regexMatcher;
+    }
+
+    public DetectionSettings getSettings() {
+        return settings;
+    }
+
+    public boolean isUseRegex() {
+        return regexMatcher != null;
+    }
+
+    /**
+     * 字符串匹配自动机是否直接从编译缓存恢复
+     */
+    public boolean isLoadedFromCache() {
+        return loadedFromCache;
+    }
+}
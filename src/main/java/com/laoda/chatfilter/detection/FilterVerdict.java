@@ -0,0 +1,58 @@
+package com.laoda.chatfilter.detection;
+
+/**
+ * 单条消息的检测结论
+ * 命中时才会创建；maskedMessage 不为 null 表示只需替换敏感词，否则拦截整条消息
+ */
+public final class FilterVerdict {
+
+    private final String word;
+    private final int severity;
+    private final int weight;
+    private final String category;
+    private final String maskedMessage;
+
+    FilterVerdict(String word, int severity, int weight, String category, String maskedMessage) {
+        this.word = word;
+        this.severity = severity;
+        this.weight = weight;
+        this.category = category;
+        this.maskedMessage = maskedMessage;
+    }
+
+    /**
+     * 命中的敏感词 (多个命中时为等级最高的一个)
+     */
+    public String getWord() {
+        return word;
+    }
+
+    public int getSeverity() {
+        return severity;
+    }
+
+    /**
+     * 本次违规计入的处罚权重
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * 是否拦截整条消息
+     */
+    public boolean isCancel() {
+        return maskedMessage == null;
+    }
+
+    /**
+     * 替换敏感词后的消息，拦截时为 null
+     */
+    public String getMaskedMessage() {
+        return maskedMessage;
+    }
+}
@@ -0,0 +1,214 @@
+package com.laoda.chatfilter.detection;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 刷屏检测
+ * 为每条消息计算 64 位 SimHash 指纹 (按 3 字符片段加权，忽略空白和大小写)，
+ * 内容相同或只做了少量改动的消息指纹的汉明距离很小。
+ * 每个玩家只保存一个固定大小的环形缓冲区 (最近若干条消息的指纹和时间)，不保存消息文本；
+ * 时间窗口内与当前消息相近的历史消息超过允许的数量即判定为刷屏。
+ *
+ * 计算指纹的耗时与消息长度成正比。玩家退出时应调用 {@link #forget(UUID)}；
+ * 跟踪的玩家数量有上限，达到上限时先清理过期记录，仍然已满则不再跟踪新玩家。
+ */
+public final class FloodDetector {
+
+    /** 指纹片段长度 (字符) */
+    private static final int SHINGLE = 3;
+
+    /** 位切片计数器：第 k 个 long 保存 64 个计数器的第 k 位 */
+    private static final ThreadLocal<long[]> COUNTERS = ThreadLocal.withInitial(() -> new long[32]);
+
+    private final int historySize;
+    private final long windowNanos;
+    private final int maxDistance;
+    private final int maxRepeats;
+    private final int minLength;
+    private final int maxPlayers;
+    private final Map<UUID, History> histories = new ConcurrentHashMap<>();
+
+    /**
+     * @param historySize 每个玩家保存的指纹数量
+     * @param windowMillis 只与该时间内的消息比较
+     * @param maxDistance 视为相近消息的最大汉明距离 (0-64)
+     * @param maxRepeats 时间窗口内允许的相近消息数量，超过即为刷屏
+     * @param minLength 去除空白后短于该长度的消息不参与检测
+     * @param maxPlayers 最多同时跟踪的玩家数量
+     */
+    public FloodDetector(int historySize, long windowMillis, int maxDistance, int maxRepeats, int minLength,
+                         int maxPlayers) {
+        this.historySize = historySize;
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.maxDistance = maxDistance;
+        this.maxRepeats = maxRepeats;
+        this.minLength = minLength;
+        this.maxPlayers = maxPlayers;
+    }
+
+    /**
+     * 记录玩家的消息并判断是否刷屏 (刷屏的消息同样计入历史)
+     */
+    public boolean isFlood(UUID playerId, CharSequence message) {
+        if (message == null || contentLength(message) < minLength) {
+            return false;
+        }
+
+        History history = histories.get(playerId);
+        if (history == null) {
+            if (histories.size() >= maxPlayers && !evictExpired()) {
+                return false;
+            }
+            history = histories.computeIfAbsent(playerId, k -> new History(historySize));
+        }
+
+        long fingerprint = fingerprint(message);
+        long now = System.nanoTime();
+        synchronized (history) {
+            int similar = 0;
+            for (int i = 0; i < history.size; i++) {
+                if (now - history.times[i] <= windowNanos
+                        && Long.bitCount(history.fingerprints[i] ^ fingerprint) <= maxDistance) {
+                    similar++;
+                }
+            }
+            history.add(fingerprint, now);
+            return similar > maxRepeats;
+        }
+    }
+
+    /**
+     * 玩家退出时移除其记录
+     */
+    public void forget(UUID playerId) {
+        histories.remove(playerId);
+    }
+
+    /**
+     * 当前跟踪的玩家数量
+     */
+    public int size() {
+        return histories.size();
+    }
+
+    /**
+     * 计算消息的 SimHash 指纹
+     * 去除空白并折叠大小写后，每个连续 3 字符片段散列为 64 位，各位按片段投票，过半为 1 的位置 1；
+     * 不足 3 个字符时整条消息作为一个片段。
+     * 64 个票数以位切片方式保存，每个片段只需几次按位运算即可累加，而不是逐位循环
+     */
+    public static long fingerprint(CharSequence message) {
+        long[] counters = COUNTERS.get();
+        Arrays.fill(counters, 0);
+
+        long window = 0;
+        int kept = 0;
+        int shingles = 0;
+        int length = message.length();
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+
+            // 滚动保存最近 3 个字符，片段的散列只依赖窗口内容
+            window = (window << 16 | Character.toLowerCase(c)) & 0xFFFFFFFFFFFFL;
+            if (++kept >= SHINGLE) {
+                add(counters, mix(window));
+                shingles++;
+            }
+        }
+        if (kept > 0 && kept < SHINGLE) {
+            add(counters, mix(window));
+            shingles++;
+        }
+
+        // 从最高位平面开始逐位比较，同时得出 64 个计数器是否大于 shingles / 2
+        int threshold = shingles / 2;
+        long greater = 0;
+        long equal = -1L;
+        for (int k = 31 - Integer.numberOfLeadingZeros(shingles); k >= 0; k--) {
+            if ((threshold >>> k & 1) == 0) {
+                greater |= equal & counters[k];
+                equal &= ~counters[k];
+            } else {
+                equal &= counters[k];
+            }
+        }
+        return greater;
+    }
+
+    /**
+     * 把 hash 的每一位并行加到对应的计数器上 (逐平面的行波进位)
+     */
+    private static void add(long[] counters, long hash) {
+        long carry = hash;
+        for (int k = 0; carry != 0; k++) {
+            long sum = counters[k] ^ carry;
+            carry &= counters[k];
+            counters[k] = sum;
+        }
+    }
+
+    /**
+     * SplitMix64 终结函数，使相邻片段的散列各位互不相关
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static int contentLength(CharSequence message) {
+        int count = 0;
+        for (int i = 0; i < message.length(); i++) {
+            if (!Character.isWhitespace(message.charAt(i))) count++;
+        }
+        return count;
+    }
+
+    /**
+     * 清理最新一条记录已超出时间窗口的玩家，返回清理后是否有空位
+     */
+    private boolean evictExpired() {
+        long now = System.nanoTime();
+        Iterator<History> iterator = histories.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now, windowNanos)) {
+                iterator.remove();
+            }
+        }
+        return histories.size() < maxPlayers;
+    }
+
+    /**
+     * 单个玩家的环形缓冲区：固定数量的指纹和对应的时间
+     */
+    private static final class History {
+        final long[] fingerprints;
+        final long[] times;
+        int size;
+        int next;
+
+        History(int capacity) {
+            this.fingerprints = new long[capacity];
+            this.times = new long[capacity];
+        }
+
+        void add(long fingerprint, long time) {
+            fingerprints[next] = fingerprint;
+            times[next] = time;
+            next = (next + 1) % fingerprints.length;
+            if (size < fingerprints.length) size++;
+        }
+
+        /**
+         * 最新一条记录是否已超出时间窗口 (没有记录时视为过期)
+         */
+        synchronized boolean isExpired(long now, long window) {
+            return size == 0 || now - times[(next + times.length - 1) % times.length] > window;
+        }
+    }
+}
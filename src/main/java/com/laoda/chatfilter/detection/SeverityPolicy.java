@@ -0,0 +1,150 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.config.BukkitSettingsSection;
+import com.laoda.chatfilter.config.SettingsSection;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 敏感词等级策略
+ * 每个敏感词有一个等级 (words.yml 的 word-severity 段，未列出的使用默认等级)，
+ * 命中词的最高等级达到拦截等级时拦截整条消息，否则只把敏感词替换为掩码字符。
+ *
+ * 敏感词还带有处罚权重 (word-weight 段，默认 1) 和分类 (word-category 段)，
+ * 违规次数按权重累计，处罚阶梯按累计权重升级。
+ * 检测时不直接查询这里的散列表，而是在构建快照时展开为按模式编号索引的数组 ({@link WordMetadata})。
+ */
+public final class SeverityPolicy {
+
+    /** 未设置分类的词所属的分类 */
+    public static final String DEFAULT_CATEGORY = "default";
+
+    /** 所有词都拦截整条消息 (旧版行为) */
+    public static final SeverityPolicy CANCEL_ALL =
+            new SeverityPolicy(Collections.<String, Integer>emptyMap(), 1, 1, '*');
+
+    private final Map<String, Integer> wordSeverities;
+    private final Map<String, Integer> wordWeights;
+    private final Map<String, String> wordCategories;
+    private final int defaultSeverity;
+    private final int cancelSeverity;
+    private final char maskChar;
+
+    public SeverityPolicy(Map<String, Integer> wordSeverities, int defaultSeverity,
+                          int cancelSeverity, char maskChar) {
+        this(wordSeverities, Collections.<String, Integer>emptyMap(), Collections.<String, String>emptyMap(),
+                defaultSeverity, cancelSeverity, maskChar);
+    }
+
+    public SeverityPolicy(Map<String, Integer> wordSeverities, Map<String, Integer> wordWeights,
+                          Map<String, String> wordCategories, int defaultSeverity,
+                          int cancelSeverity, char maskChar) {
+        this.wordSeverities = wordSeverities;
+        this.wordWeights = wordWeights;
+        this.wordCategories = wordCategories;
+        this.defaultSeverity = defaultSeverity;
+        this.cancelSeverity = cancelSeverity;
+        this.maskChar = maskChar;
+    }
+
+    /**
+     * 从 config.yml 的 filter-mode 段和 words.yml 的 word-severity、word-weight、word-category 段加载
+     * @param words words.yml 根配置段
+     */
+    public static SeverityPolicy load(ConfigurationSection filterMode, ConfigurationSection words) {
+        return load(BukkitSettingsSection.wrap(filterMode), BukkitSettingsSection.wrap(words));
+    }
+
+    /**
+     * 同 {@link #load(ConfigurationSection, ConfigurationSection)}，不依赖 Bukkit，供离线工具使用
+     */
+    public static SeverityPolicy load(SettingsSection filterMode, SettingsSection words) {
+        // 格式错误的条目由 ConfigValidator 报告
+        Map<String, Integer> wordWeights = new HashMap<>();
+        Map<String, String> wordCategories = new HashMap<>();
+        SettingsSection weights = words != null ? words.getSection("word-weight") : null;
+        if (weights != null) {
+            for (String word : weights.getKeys()) {
+                if (weights.isInt(word) && weights.getInt(word, 0) >= 0) {
+                    wordWeights.put(word, weights.getInt(word, 0));
+                }
+            }
+        }
+        SettingsSection categories = words != null ? words.getSection("word-category") : null;
+        if (categories != null) {
+            for (String word : categories.getKeys()) {
+                String category = categories.getString(word, "").trim();
+                if (!category.isEmpty()) {
+                    wordCategories.put(word, category);
+                }
+            }
+        }
+
+        Map<String, Integer> wordSeverities = new HashMap<>();
+        SettingsSection severities = words != null ? words.getSection("word-severity") : null;
+        if (filterMode != null && severities != null) {
+            for (String word : severities.getKeys()) {
+                if (severities.isInt(word)) {
+                    wordSeverities.put(word, severities.getInt(word, 0));
+                }
+            }
+        }
+
+        // 未配置 filter-mode 时保持全部拦截
+        String mask = filterMode != null ? filterMode.getString("mask-char", "*") : "*";
+        return new SeverityPolicy(Collections.unmodifiableMap(wordSeverities),
+                Collections.unmodifiableMap(wordWeights), Collections.unmodifiableMap(wordCategories),
+                filterMode != null ? filterMode.getInt("default-severity", 3) : 1,
+                filterMode != null ? filterMode.getInt("cancel-severity", 3) : 1,
+                mask.isEmpty() ? '*' : mask.charAt(0));
+    }
+
+    /**
+     * 获取敏感词的等级
+     */
+    public int severityOf(String word) {
+        Integer severity = wordSeverities.get(word);
+        return severity != null ? severity : defaultSeverity;
+    }
+
+    /**
+     * 获取敏感词每次命中计入的处罚权重
+     */
+    public int weightOf(String word) {
+        Integer weight = wordWeights.get(word);
+        return weight != null ? weight : 1;
+    }
+
+    /**
+     * 获取敏感词的分类
+     */
+    public String categoryOf(String word) {
+        String category = wordCategories.get(word);
+        return category != null ? category : DEFAULT_CATEGORY;
+    }
+
+    /**
+     * 该等级的命中是否应拦截整条消息
+     */
+    public boolean shouldCancel(int severity) {
+        return severity >= cancelSeverity;
+    }
+
+    /**
+     * 是否有任何等级会被替换而不是拦截
+     */
+    public boolean allowsMasking() {
+        if (!shouldCancel(defaultSeverity)) return true;
+        for (int severity : wordSeverities.values()) {
+            if (!shouldCancel(severity)) return true;
+        }
+        return false;
+    }
+
+    public char getMaskChar() {
+        return maskChar;
+    }
+}
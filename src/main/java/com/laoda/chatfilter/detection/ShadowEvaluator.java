@@ -0,0 +1,261 @@
+package com.laoda.chatfilter.detection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * 候选词库的影子评估
+ * 按采样率抽取线上消息，连同当前词库在聊天线程上已得出的结论一起交给后台线程，
+ * 后台线程用候选词库重新检测并汇总两者结论的差异，用于在替换 words.yml 前评估误判。
+ *
+ * 聊天线程只做一次随机采样和一次无锁入队，从不等待：队列有容量上限，已满时直接丢弃样本并计数。
+ * 后台线程在队列为空时休眠片刻再轮询，聊天线程无需唤醒它。
+ */
+public final class ShadowEvaluator {
+
+    /** 队列为空时后台线程的休眠时间 */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final DetectionSnapshot candidate;
+    private final String name;
+    private final double sampleRate;
+    private final int queueCapacity;
+    private final int samplesPerEntry;
+
+    private final Queue<Sample> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder differing = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final BiConsumer<String, Throwable> errorLog;
+    private final Map<Kind, Map<String, Entry>> differences = new ConcurrentHashMap<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * 创建后立即启动后台线程
+     * @param candidate 候选词库的检测快照 (不应启用结论缓存)
+     * @param name 候选词库名称，用于报告
+     * @param sampleRate 采样率 (0-1)
+     * @param queueCapacity 等待评估的样本数上限
+     * @param samplesPerEntry 每个差异条目保留的示例消息数
+     * @param errorLog 记录第一个评估失败的样本 (之后只计数)
+     */
+    public ShadowEvaluator(DetectionSnapshot candidate, String name, double sampleRate, int queueCapacity,
+                           int samplesPerEntry, BiConsumer<String, Throwable> errorLog) {
+        this.candidate = candidate;
+        this.errorLog = errorLog;
+        this.name = name;
+        this.sampleRate = sampleRate;
+        this.queueCapacity = queueCapacity;
+        this.samplesPerEntry = samplesPerEntry;
+        for (Kind kind : Kind.values()) {
+            differences.put(kind, new ConcurrentHashMap<>());
+        }
+
+        this.worker = new Thread(this::run, "ChatFilter-Shadow");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * 按采样率提交一条消息及当前词库的结论 (未命中为 null)，在聊天线程上调用，不会阻塞
+     */
+    public void offer(String message, FilterVerdict activeVerdict) {
+        if (!running || (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(new Sample(message, activeVerdict));
+    }
+
+    /**
+     * 停止后台线程并丢弃未评估的样本
+     */
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        queue.clear();
+    }
+
+    private void run() {
+        while (running) {
+            Sample sample = queue.poll();
+            if (sample == null) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            queued.decrementAndGet();
+            try {
+                compare(sample.message, sample.activeVerdict, candidate.inspect(sample.message));
+            } catch (RuntimeException e) {
+                // 单条样本出错不影响后续评估；只有后台线程写入计数，首次出错时记录一次
+                if (failed.sum() == 0) {
+                    errorLog.accept("影子模式评估样本失败 (之后的失败只计数): " + sample.message, e);
+                }
+                failed.increment();
+            }
+        }
+    }
+
+    private void compare(String message, FilterVerdict active, FilterVerdict shadow) {
+        evaluated.increment();
+        if (active == null && shadow == null) {
+            return;
+        }
+
+        Kind kind;
+        String key;
+        if (active == null) {
+            kind = Kind.ADDED;
+            key = shadow.getWord();
+        } else if (shadow == null) {
+            kind = Kind.REMOVED;
+            key = active.getWord();
+        } else if (active.isCancel() != shadow.isCancel()) {
+            kind = Kind.ACTION_CHANGED;
+            key = shadow.getWord() + (shadow.isCancel() ? " (替换 → 拦截)" : " (拦截 → 替换)");
+        } else {
+            return;
+        }
+
+        differing.increment();
+        Entry entry = differences.get(kind).computeIfAbsent(key, Entry::new);
+        entry.record(message, samplesPerEntry);
+    }
+
+    /**
+     * 某类差异中次数最多的若干条目，按次数从多到少排列
+     */
+    public List<Entry> getTopDifferences(Kind kind, int limit) {
+        // 后台线程仍在计数，先取得各条目次数的快照再排序
+        Map<Entry, Long> counts = new HashMap<>();
+        for (Entry entry : differences.get(kind).values()) {
+            counts.put(entry, entry.getCount());
+        }
+        List<Entry> entries = new ArrayList<>(counts.keySet());
+        entries.sort((a, b) -> !counts.get(a).equals(counts.get(b))
+                ? Long.compare(counts.get(b), counts.get(a))
+                : a.getKey().compareTo(b.getKey()));
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCandidateWordCount() {
+        return candidate.getWordCount();
+    }
+
+    /**
+     * 已评估的样本数
+     */
+    public long getEvaluatedCount() {
+        return evaluated.sum();
+    }
+
+    /**
+     * 因队列已满丢弃的样本数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 两个词库结论不同的样本数
+     */
+    public long getDifferingCount() {
+        return differing.sum();
+    }
+
+    /**
+     * 评估时出错而未计入结果的样本数
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * 等待评估的样本数
+     */
+    public int getQueueSize() {
+        return Math.max(0, queued.get());
+    }
+
+    /**
+     * 差异类型
+     */
+    public enum Kind {
+        /** 当前词库未命中，候选词库命中 (可能的新增误判) */
+        ADDED,
+        /** 当前词库命中，候选词库未命中 (可能的漏判) */
+        REMOVED,
+        /** 两者都命中，但拦截和替换的处理方式不同 */
+        ACTION_CHANGED
+    }
+
+    /**
+     * 一个差异条目：命中的敏感词、出现次数和最早出现的几条不同的示例消息
+     */
+    public static final class Entry {
+        private final String key;
+        private final LongAdder count = new LongAdder();
+        private final List<String> samples = new ArrayList<>();
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        void record(String message, int maxSamples) {
+            count.increment();
+            synchronized (samples) {
+                if (samples.size() < maxSamples && !samples.contains(message)) {
+                    samples.add(message);
+                }
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public List<String> getSamples() {
+            synchronized (samples) {
+                return Collections.unmodifiableList(new ArrayList<>(samples));
+            }
+        }
+    }
+
+    private static final class Sample {
+        final String message;
+        final FilterVerdict activeVerdict;
+
+        Sample(String message, FilterVerdict activeVerdict) {
+            this.message = message;
+            this.activeVerdict = activeVerdict;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.laoda.chatfilter.detection;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 近期消息的检测结论缓存
+ * "gg"、"tpa"、复制粘贴的广告等消息反复出现，命中缓存时直接返回上次的结论，跳过整个检测流程。
+ *
+ * 采用分段 LRU (SLRU)：新消息先进入试用段，再次命中才晋升到保护段，
+ * 只出现一次的消息不会把反复出现的消息挤出缓存。缓存按消息散列分为若干条带，
+ * 每个条带独立加锁，聊天线程之间几乎不会竞争。
+ *
+ * 缓存属于单个 {@link DetectionSnapshot}，词库或设置变化时随快照一起整体替换，不会读到旧词库的结论。
+ * 以原始消息为键 (替换后的消息由原文生成，规范化相同的不同原文结论可能不同)，过长的消息不缓存。
+ */
+public final class VerdictCache {
+
+    /** 超过该长度的消息不缓存，限制缓存的内存占用 */
+    private static final int MAX_MESSAGE_LENGTH = 256;
+    private static final int STRIPES = 16;
+    /** 保护段占每个条带容量的比例 (百分比) */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /** 未命中任何敏感词的结论 */
+    private static final FilterVerdict CLEAN = new FilterVerdict(null, 0, 0, null, null);
+
+    // 命中和未命中次数，跨快照累计
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private final Stripe[] stripes;
+
+    /**
+     * @param capacity 缓存的消息总数
+     */
+    VerdictCache(int capacity) {
+        int perStripe = Math.max(2, (capacity + STRIPES - 1) / STRIPES);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * 查询缓存的结论
+     * @return 命中时返回结论 (未命中敏感词的消息为 {@link #isClean(FilterVerdict)} 的占位结论)，未缓存返回 null
+     */
+    FilterVerdict get(String message) {
+        if (message.length() > MAX_MESSAGE_LENGTH) return null;
+
+        FilterVerdict verdict = stripeOf(message).get(message);
+        if (verdict != null) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+        }
+        return verdict;
+    }
+
+    /**
+     * 缓存消息的结论，verdict 为 null 表示未命中敏感词
+     */
+    void put(String message, FilterVerdict verdict) {
+        if (message.length() > MAX_MESSAGE_LENGTH) return;
+        stripeOf(message).put(message, verdict == null ? CLEAN : verdict);
+    }
+
+    static boolean isClean(FilterVerdict verdict) {
+        return verdict == CLEAN;
+    }
+
+    /**
+     * 缓存命中次数
+     */
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * 缓存未命中次数
+     */
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    private Stripe stripeOf(String message) {
+        int hash = message.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * 单个条带：试用段和保护段均按访问顺序排列，表头为最久未访问的消息
+     */
+    private static final class Stripe {
+        private final int probationCapacity;
+        private final int protectedCapacity;
+        private final LinkedHashMap<String, FilterVerdict> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, FilterVerdict> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+        Stripe(int capacity) {
+            this.protectedCapacity = Math.max(1, capacity * PROTECTED_PERCENT / 100);
+            this.probationCapacity = Math.max(1, capacity - protectedCapacity);
+        }
+
+        synchronized FilterVerdict get(String message) {
+            FilterVerdict verdict = protectedSegment.get(message);
+            if (verdict != null) {
+                return verdict;
+            }
+
+            verdict = probation.remove(message);
+            if (verdict != null) {
+                // 再次命中，晋升到保护段；保护段已满时把其中最久未访问的降回试用段
+                protectedSegment.put(message, verdict);
+                if (protectedSegment.size() > protectedCapacity) {
+                    Map.Entry<String, FilterVerdict> eldest = removeEldest(protectedSegment);
+                    probation.put(eldest.getKey(), eldest.getValue());
+                    trimProbation();
+                }
+            }
+            return verdict;
+        }
+
+        synchronized void put(String message, FilterVerdict verdict) {
+            if (protectedSegment.containsKey(message)) {
+                protectedSegment.put(message, verdict);
+                return;
+            }
+            probation.put(message, verdict);
+            trimProbation();
+        }
+
+        private void trimProbation() {
+            while (probation.size() > probationCapacity) {
+                removeEldest(probation);
+            }
+        }
+
+        private static Map.Entry<String, FilterVerdict> removeEldest(LinkedHashMap<String, FilterVerdict> segment) {
+            Iterator<Map.Entry<String, FilterVerdict>> iterator = segment.entrySet().iterator();
+            Map.Entry<String, FilterVerdict> eldest = iterator.next();
+            iterator.remove();
+            return eldest;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.laoda.chatfilter.detection;
+
+import com.laoda.chatfilter.algorithm.AhoCorasick;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按模式编号索引的敏感词元数据 (等级、处罚权重、分类)
+ * 在构建快照时按 {@link SeverityPolicy} 一次性展开为基本类型数组，
+ * 检测时由命中的模式编号直接取值，不再按敏感词查询散列表。变体与原词共享同一份元数据。
+ */
+final class WordMetadata {
+
+    static final WordMetadata EMPTY = new WordMetadata(new int[0], new int[0], new int[0], new String[0]);
+
+    private final int[] severities;
+    private final int[] weights;
+    private final int[] categories;
+    private final String[] categoryNames;
+
+    private WordMetadata(int[] severities, int[] weights, int[] categories, String[] categoryNames) {
+        this.severities = severities;
+        this.weights = weights;
+        this.categories = categories;
+        this.categoryNames = categoryNames;
+    }
+
+    /**
+     * 为自动机的每个模式编号展开元数据，automaton 为 null 时返回空表
+     */
+    static WordMetadata of(AhoCorasick automaton, SeverityPolicy policy) {
+        if (automaton == null || automaton.getPatternCount() == 0) {
+            return EMPTY;
+        }
+
+        int count = automaton.getPatternCount();
+        int[] severities = new int[count];
+        int[] weights = new int[count];
+        int[] categories = new int[count];
+        Map<String, Integer> categoryIds = new HashMap<>();
+        List<String> categoryNames = new ArrayList<>();
+
+        for (int id = 0; id < count; id++) {
+            String word = automaton.getPattern(id);
+            severities[id] = policy.severityOf(word);
+            weights[id] = policy.weightOf(word);
+
+            String category = policy.categoryOf(word);
+            Integer categoryId = categoryIds.get(category);
+            if (categoryId == null) {
+                categoryId = categoryNames.size();
+                categoryIds.put(category, categoryId);
+                categoryNames.add(category);
+            }
+            categories[id] = categoryId;
+        }
+        return new WordMetadata(severities, weights, categories, categoryNames.toArray(new String[0]));
+    }
+
+    int size() {
+        return severities.length;
+    }
+
+    int severity(int id) {
+        return severities[id];
+    }
+
+    int weight(int id) {
+        return weights[id];
+    }
+
+    String category(int id) {
+        return categoryNames[categories[id]];
+    }
+}
@@ -113,11 +113,15 @@ public class Messages {
         config.set("violation.reset-player", "&a已重置玩家 &e{0} &a的违规次数 (原: &e{1} &a次)");
         config.set("violation.no-violations", "&e玩家 &e{0} &e没有违规记录");
         config.set("violation.player-count", "&e玩家 &e{0} &e当前违规次数: &7{1}");
+        config.set("violation.flood", "刷屏");
+        config.set("violation.rate-limited", "&c你发送消息太快了，请稍后再试");
         
         // 测试功能
         config.set("test.no-message", "&c请输入要测试的消息!");
         config.set("test.no-sensitive-word", "&a测试消息: &7{0} &a- 未检测到敏感词");
         config.set("test.sensitive-word-found", "&c测试消息: &7{0} &c- 检测到敏感词: &e{1}");
+        config.set("command.test.masked", "&e低等级敏感词，消息将被替换为: &7{0}");
+        config.set("command.test.metadata", "&7等级: &e{0} &7权重: &e{1} &7分类: &e{2}");
         
         // 统计信息
         config.set("stats.header", "&6===== ChatFilter 统计信息 =====");
@@ -131,6 +135,11 @@ public class Messages {
         config.set("stats.last-reset", "&e上次重置: &7{0}");
         config.set("stats.log-level", "&e日志级别: &7{0}");
         config.set("stats.file-logging", "&e文件日志: &7{0}");
+        config.set("command.stats.prefilter", "&e预过滤跳过: &7{0} / {1} 条消息 ({2}%)");
+        config.set("command.stats.verdict-cache", "&e结论缓存命中: &7{0} / {1} 次 ({2}%, 容量 {3})");
+        config.set("command.stats.throttled", "&e限流丢弃: &7{0} 条消息 (限流{1})");
+        config.set("command.stats.punishment-queue", "&e处罚命令队列: &7排队 {0} 条 (峰值 {1}), 已执行 {2} 条");
+        config.set("command.stats.punishment-latency", "&e处罚命令延迟: &7平均 {0} ms, 最大 {1} ms (每 tick 预算 {2} ms)");
         
         // 帮助信息
         config.set("help.header", "&6===== ChatFilter 命令帮助 =====");
@@ -145,6 +154,27 @@ public class Messages {
         config.set("help.violations", "&e/cf violations [玩家] &7- 查看违规次数");
         config.set("help.resetviolations", "&e/cf resetviolations [玩家] &7- 重置违规次数");
         config.set("help.stats", "&e/cf stats &7- 查看插件统计信息");
+        config.set("help.benchmark", "&e/cf benchmark &7- 测试当前词库的检测耗时");
+        config.set("help.shadow", "&e/cf shadow &7- 查看候选词库的影子评估报告");
+        
+        // 基准测试
+        config.set("command.benchmark.started", "&7正在后台执行基准测试，请稍候...");
+        config.set("command.benchmark.header", "&6===== 基准测试 ({0} 个敏感词, {1} 条消息) =====");
+        config.set("command.benchmark.literal", "&e字符串匹配: &7{0} ns/条, 命中 {1} 条");
+        config.set("command.benchmark.fuzzy", "&e模糊匹配: &7{0} ns/条, 命中 {1} 条 ({2} 个词, {3} 个片段)");
+        config.set("command.benchmark.fuzzy-build", "&e模糊匹配未启用，临时构建耗时: &7{0} ms");
+        config.set("command.benchmark.failed", "&c基准测试失败: {0}");
+        
+        // 影子评估
+        config.set("command.shadow.disabled", "&c影子模式未启用或候选词库仍在构建 (config.yml 中的 shadow-mode)");
+        config.set("command.shadow.header", "&6===== 影子评估: {0} ({1} 个敏感词) =====");
+        config.set("command.shadow.summary", "&e已评估: &7{0} 条 &e结论不同: &7{1} 条 &e丢弃: &7{2} 条 &e排队: &7{3} 条 &e出错: &7{4} 条");
+        config.set("command.shadow.added", "&a新增命中 (候选词库命中，当前词库未命中):");
+        config.set("command.shadow.removed", "&c不再命中 (当前词库命中，候选词库未命中):");
+        config.set("command.shadow.action-changed", "&6处理方式变化 (拦截与替换不同):");
+        config.set("command.shadow.entry", "&e  {0}: &7{1} 次");
+        config.set("command.shadow.sample", "&8    > {0}");
+        config.set("command.shadow.none", "&7  无");
         
         // 状态文本
         config.set("status.enabled", "启用");
@@ -0,0 +1,100 @@
+package com.laoda.chatfilter.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的玩家聊天限流器
+ * 令牌桶以 GCRA (通用信元速率算法) 的形式实现：每个玩家只保存一个 AtomicLong，
+ * 即 "理论到达时间" (桶恰好装满令牌的时刻)。每条消息把它推后一个发送间隔，
+ * 推后的量超出突发容量时丢弃消息；更新通过 CAS 完成，不加锁。
+ *
+ * 玩家退出时应调用 {@link #forget(UUID)}；跟踪的玩家数量有上限，
+ * 达到上限时先清理令牌已满的玩家 (与新玩家等价)，仍然已满则不限流新玩家。
+ */
+public class ChatRateLimiter {
+
+    // 被限流丢弃的消息数，跨重载累计
+    private static final LongAdder THROTTLED = new LongAdder();
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxPlayers;
+    private final Map<UUID, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param messagesPerSecond 持续发送速率 (每秒补充的令牌数)
+     * @param burst 桶容量，即允许连续发送的消息数
+     * @param maxPlayers 最多同时跟踪的玩家数量
+     */
+    public ChatRateLimiter(double messagesPerSecond, int burst, int maxPlayers) {
+        this.intervalNanos = (long) (1_000_000_000L / messagesPerSecond);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxPlayers = maxPlayers;
+    }
+
+    /**
+     * 尝试为玩家的一条消息取得令牌，返回 false 表示应丢弃该消息
+     */
+    public boolean tryAcquire(UUID playerId) {
+        AtomicLong bucket = buckets.get(playerId);
+        if (bucket == null) {
+            if (buckets.size() >= maxPlayers && !evictFull()) {
+                return true;
+            }
+            bucket = buckets.computeIfAbsent(playerId, k -> new AtomicLong(System.nanoTime()));
+        }
+
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = bucket.get();
+            long start = arrival - now > 0 ? arrival : now;
+            if (start - now > toleranceNanos) {
+                THROTTLED.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(arrival, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 玩家退出时移除其令牌桶
+     */
+    public void forget(UUID playerId) {
+        buckets.remove(playerId);
+    }
+
+    /**
+     * 当前跟踪的玩家数量
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * 被限流丢弃的消息总数
+     */
+    public static long getThrottledCount() {
+        return THROTTLED.sum();
+    }
+
+    /**
+     * 清理令牌已满的玩家，返回清理后是否有空位
+     */
+    private boolean evictFull() {
+        long now = System.nanoTime();
+        Iterator<AtomicLong> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() - now <= 0) {
+                iterator.remove();
+            }
+        }
+        return buckets.size() < maxPlayers;
+    }
+}
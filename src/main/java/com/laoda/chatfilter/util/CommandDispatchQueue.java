@@ -0,0 +1,146 @@
+package com.laoda.chatfilter.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 按 tick 时间预算执行的命令队列
+ * 任意线程都可以无锁入队；主线程每 tick 调用一次 {@link #drain()}，按入队顺序执行命令，
+ * 用完本 tick 的时间预算即停止，积压的命令顺延到之后的 tick，大量违规集中出现时不会拖慢 TPS。
+ * 每次至少执行一条命令，预算再小也能保证队列向前推进。
+ */
+public class CommandDispatchQueue {
+
+    private final Consumer<String> dispatcher;
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger peakDepth = new AtomicInteger();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long tickBudgetNanos;
+
+    /**
+     * @param dispatcher 在主线程上执行一条命令 (应自行处理命令的异常)
+     * @param tickBudgetNanos 每 tick 执行命令的时间预算
+     */
+    public CommandDispatchQueue(Consumer<String> dispatcher, long tickBudgetNanos) {
+        this.dispatcher = dispatcher;
+        this.tickBudgetNanos = tickBudgetNanos;
+    }
+
+    /**
+     * 命令入队，可在任意线程调用
+     */
+    public void submit(String command) {
+        queue.offer(new Pending(command, System.nanoTime()));
+        int current = depth.incrementAndGet();
+        if (current > peakDepth.get()) {
+            peakDepth.accumulateAndGet(current, Math::max);
+        }
+    }
+
+    /**
+     * 在主线程上执行排队的命令，直到队列为空或用完本 tick 的时间预算，返回执行的命令数
+     */
+    public int drain() {
+        long start = System.nanoTime();
+        long budget = tickBudgetNanos;
+        int count = 0;
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            depth.decrementAndGet();
+            dispatch(pending);
+            count++;
+            if (System.nanoTime() - start >= budget) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 不计预算执行全部排队的命令 (插件关闭时调用，避免丢失处罚)
+     */
+    public int drainAll() {
+        int count = 0;
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            depth.decrementAndGet();
+            dispatch(pending);
+            count++;
+        }
+        return count;
+    }
+
+    private void dispatch(Pending pending) {
+        long latency = System.nanoTime() - pending.enqueuedAt;
+        try {
+            dispatcher.accept(pending.command);
+        } finally {
+            dispatched.increment();
+            totalLatencyNanos.add(latency);
+            if (latency > maxLatencyNanos.get()) {
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            }
+        }
+    }
+
+    public void setTickBudgetNanos(long tickBudgetNanos) {
+        this.tickBudgetNanos = tickBudgetNanos;
+    }
+
+    public long getTickBudgetNanos() {
+        return tickBudgetNanos;
+    }
+
+    /**
+     * 当前排队的命令数
+     */
+    public int getDepth() {
+        return Math.max(0, depth.get());
+    }
+
+    /**
+     * 队列出现过的最大积压
+     */
+    public int getPeakDepth() {
+        return peakDepth.get();
+    }
+
+    /**
+     * 已执行的命令数
+     */
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    /**
+     * 从入队到开始执行的平均延迟 (纳秒)
+     */
+    public long getAverageLatencyNanos() {
+        long count = dispatched.sum();
+        return count > 0 ? totalLatencyNanos.sum() / count : 0;
+    }
+
+    /**
+     * 从入队到开始执行的最大延迟 (纳秒)
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    private static final class Pending {
+        final String command;
+        final long enqueuedAt;
+
+        Pending(String command, long enqueuedAt) {
+            this.command = command;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -12,7 +12,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 线程安全的违规计数器
- * 支持自动重置和并发访问
+ * 支持自动重置和并发访问，违规按敏感词的处罚权重累计
  */
 public class ViolationCounter {
     
@@ -34,6 +34,16 @@ public class ViolationCounter {
      * @return 增加后的违规次数
      */
     public int incrementViolation(String playerName) {
+        return addViolation(playerName, 1);
+    }
+    
+    /**
+     * 按处罚权重累计玩家的违规
+     * @param playerName 玩家名
+     * @param weight 本次违规的权重 (敏感词的 word-weight)
+     * @return 累计后的违规权重
+     */
+    public int addViolation(String playerName, int weight) {
         if (playerName == null || playerName.trim().isEmpty()) {
             throw new IllegalArgumentException("玩家名不能为空");
         }
@@ -41,7 +51,7 @@ public class ViolationCounter {
         resetLock.readLock().lock();
         try {
             return violationCounts.computeIfAbsent(playerName, k -> new AtomicInteger(0))
-                                 .incrementAndGet();
+                                 .addAndGet(weight);
         } finally {
             resetLock.readLock().unlock();
         }